@@ -0,0 +1,101 @@
+package com.ycbd.demo.service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.ycbd.demo.config.AppProperties;
+
+/**
+ * JwtService 验证路径的进程内基准：同一 Token 反复验证，对比
+ * authenticate（已验证缓存命中）、authenticate（app.jwt.verified-cache-size=0）与 verifyAndDecode（每次验证签名）。
+ *
+ * 运行：mvn -Pjmh test-compile exec:exec，JMH 参数通过 -Djmh.args="..." 传入（如 -Djmh.args="-f 1 -wi 2"）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    private JwtService cached;
+    private JwtService uncached;
+    private String token;
+
+    @Setup
+    public void setup() {
+        cached = jwtService(10000);
+        uncached = jwtService(0);
+
+        Map<String, Object> user = new HashMap<>();
+        user.put("id", 1);
+        user.put("username", "admin");
+        user.put("real_name", "管理员");
+        user.put("org_id", 1);
+        user.put("roles", "admin");
+        token = cached.generateToken(user);
+    }
+
+    @Benchmark
+    public Map<String, Object> authenticateCached() {
+        return cached.authenticate(token);
+    }
+
+    @Benchmark
+    public Map<String, Object> authenticateUncached() {
+        return uncached.authenticate(token);
+    }
+
+    @Benchmark
+    public Map<String, Object> verifyAndDecode() {
+        return cached.verifyAndDecode(token);
+    }
+
+    private static JwtService jwtService(int verifiedCacheSize) {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getJwt().setSecret("jmh-benchmark-secret-jmh-benchmark-secret");
+        appProperties.getJwt().setExpirationMinutes(60);
+        appProperties.getJwt().setVerifiedCacheSize(verifiedCacheSize);
+
+        JwtService service = new JwtService();
+        ReflectionTestUtils.setField(service, "appProperties", appProperties);
+        ReflectionTestUtils.setField(service, "tokenFieldConfigService", new FixedTokenFieldConfigService());
+        return service;
+    }
+
+    /**
+     * 固定的 Token 字段配置，不访问数据库；与 @Cacheable 命中时一样每次返回同一实例
+     */
+    private static final class FixedTokenFieldConfigService extends TokenFieldConfigService {
+
+        private final Map<String, Boolean> fields = new LinkedHashMap<>();
+
+        private FixedTokenFieldConfigService() {
+            fields.put("userId", true);
+            fields.put("username", true);
+            fields.put("real_name", true);
+            fields.put("org_id", true);
+            fields.put("roles", true);
+        }
+
+        @Override
+        public Map<String, Boolean> getEnabledTokenFields() {
+            return fields;
+        }
+    }
+}
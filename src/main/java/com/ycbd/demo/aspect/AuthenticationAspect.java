@@ -26,7 +26,6 @@ import com.ycbd.demo.security.UserContext;
 import com.ycbd.demo.service.BaseService;
 import com.ycbd.demo.service.JwtService;
 import com.ycbd.demo.service.OperationLogService;
-import com.ycbd.demo.service.TokenFieldConfigService;
 import com.ycbd.demo.utils.ApiResponse;
 import com.ycbd.demo.utils.ResultCode;
 
@@ -46,11 +45,10 @@ public class AuthenticationAspect {
     @Autowired
     private BaseService baseService;
     @Autowired
-    private TokenFieldConfigService tokenFieldConfigService;
-    @Autowired
     private OperationLogService operationLogService;
     private final AntPathMatcher pathMatcher = new AntPathMatcher();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private ObjectMapper objectMapper;
 
     // 默认白名单路径（仅作为备用，优先使用数据库配置）
     private static final Set<String> DEFAULT_WHITELIST = new HashSet<>(Arrays.asList(
@@ -108,16 +106,15 @@ public class AuthenticationAspect {
 
         long startTime = System.currentTimeMillis();
         Object result = null;
+        Throwable failure = null;
         Map<String, Object> currentUser = null;
         try {
             String requestURI = request.getRequestURI();
             boolean whiteListed = isWhiteListed(requestURI);
-            logger.info("请求URI: {}, 是否白名单: {}", requestURI, whiteListed);
+            logger.debug("请求URI: {}, 是否白名单: {}", requestURI, whiteListed);
 
             if (!whiteListed) {
                 String token = request.getHeader("Authorization");
-                logger.info("Authorization头: {}", token);
-
                 if (token == null || !token.startsWith("Bearer ")) {
                     logger.warn("Authorization头缺失或格式不正确");
                     response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
@@ -126,18 +123,15 @@ public class AuthenticationAspect {
                     return null;
                 }
 
-                token = token.substring(7);
-                Map<String, Object> jwtPayload = jwtService.verifyAndDecode(token);
-                logger.info("JWT解析结果: {}", jwtPayload);
-
-                if (jwtPayload == null) {
+                // 重复请求的令牌直接命中已验证缓存，得到按 Token 字段配置过滤后的用户信息
+                currentUser = jwtService.authenticate(token.substring(7));
+                if (currentUser == null) {
                     logger.warn("Token验证失败或已过期");
                     response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                     response.setContentType("application/json;charset=UTF-8");
                     response.getWriter().write(objectMapper.writeValueAsString(ApiResponse.of(ResultCode.UNAUTHORIZED, "Invalid or expired token")));
                     return null;
                 }
-                currentUser = jwtPayload;
 
                 if (!currentUser.containsKey("userId") || !currentUser.containsKey("username")) {
                     logger.warn("Token缺少必要的用户信息字段: {}", currentUser.keySet());
@@ -147,37 +141,26 @@ public class AuthenticationAspect {
                     return null;
                 }
 
-                Map<String, Boolean> enabledFields = tokenFieldConfigService.getEnabledTokenFields();
-                logger.info("启用的Token字段: {}", enabledFields);
-
-                // 过滤掉未启用的字段
-                Map<String, Object> filteredUser = new HashMap<>();
-                for (Map.Entry<String, Object> entry : currentUser.entrySet()) {
-                    String fieldName = entry.getKey();
-                    if ("userId".equals(fieldName) || "username".equals(fieldName)
-                            || Boolean.TRUE.equals(enabledFields.get(fieldName))) {
-                        filteredUser.put(fieldName, entry.getValue());
-                    }
-                }
-
-                logger.info("最终用户信息: {}", filteredUser);
-                UserContext.setUser(filteredUser);
+                UserContext.setUser(currentUser);
 
                 if (logger.isDebugEnabled()) {
-                    logger.debug("Token验证成功，用户ID: {}, 用户名: {}", filteredUser.get("userId"), filteredUser.get("username"));
+                    logger.debug("Token验证成功，用户ID: {}, 用户名: {}", currentUser.get("userId"), currentUser.get("username"));
                 }
             } else {
                 // 对于白名单路径，不设置用户信息
-                logger.info("白名单路径，跳过用户认证");
+                logger.debug("白名单路径，跳过用户认证");
             }
 
             // 执行目标方法
             result = joinPoint.proceed();
             return result;
+        } catch (Throwable t) {
+            failure = t;
+            throw t;
         } finally {
             long duration = System.currentTimeMillis() - startTime;
             try {
-                operationLogService.log(request, currentUser, response, duration, result);
+                operationLogService.log(request, currentUser, response, duration, result, failure);
             } catch (Exception e) {
                 logger.error("保存操作日志失败", e);
             }
@@ -187,7 +170,7 @@ public class AuthenticationAspect {
 
     @Cacheable(value = "security_whitelist", key = "#uri")
     public boolean isWhiteListed(String uri) {
-        logger.info("检查URI '{}' 是否在白名单中", uri);
+        logger.debug("检查URI '{}' 是否在白名单中", uri);
 
         // 健康检查端点直接放行，无需查询数据库
         if ("/api/common/health".equals(uri)) {
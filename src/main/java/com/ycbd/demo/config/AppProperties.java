@@ -1,5 +1,8 @@
 package com.ycbd.demo.config;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
@@ -9,6 +12,18 @@ public class AppProperties {
 
     private Jwt jwt = new Jwt();
 
+    private Query query = new Query();
+
+    private Write write = new Write();
+
+    private Password password = new Password();
+
+    private WriteBehind writeBehind = new WriteBehind();
+
+    private Logging logging = new Logging();
+
+    private LogStorage logStorage = new LogStorage();
+
     public Jwt getJwt() {
         return jwt;
     }
@@ -17,10 +32,60 @@ public class AppProperties {
         this.jwt = jwt;
     }
 
+    public Query getQuery() {
+        return query;
+    }
+
+    public void setQuery(Query query) {
+        this.query = query;
+    }
+
+    public Write getWrite() {
+        return write;
+    }
+
+    public void setWrite(Write write) {
+        this.write = write;
+    }
+
+    public Password getPassword() {
+        return password;
+    }
+
+    public void setPassword(Password password) {
+        this.password = password;
+    }
+
+    public WriteBehind getWriteBehind() {
+        return writeBehind;
+    }
+
+    public void setWriteBehind(WriteBehind writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    public Logging getLogging() {
+        return logging;
+    }
+
+    public void setLogging(Logging logging) {
+        this.logging = logging;
+    }
+
+    public LogStorage getLogStorage() {
+        return logStorage;
+    }
+
+    public void setLogStorage(LogStorage logStorage) {
+        this.logStorage = logStorage;
+    }
+
     public static class Jwt {
 
         private String secret;
         private int expirationMinutes;
+        /** 已验证 Token 缓存的最大条目数，0 表示不缓存（每次请求都验证签名） */
+        private int verifiedCacheSize = 10000;
 
         public String getSecret() {
             return secret;
@@ -37,5 +102,367 @@ public class AppProperties {
         public void setExpirationMinutes(int expirationMinutes) {
             this.expirationMinutes = expirationMinutes;
         }
+
+        public int getVerifiedCacheSize() {
+            return verifiedCacheSize;
+        }
+
+        public void setVerifiedCacheSize(int verifiedCacheSize) {
+            this.verifiedCacheSize = verifiedCacheSize;
+        }
+    }
+
+    public static class Query {
+
+        /** 并发执行总数查询的线程数，应小于连接池大小 */
+        private int countPoolSize = 4;
+        /** countMode=capped 时的默认计数上限 */
+        private int countCap = 10000;
+        /** 查询结果缓存的最大条目数 */
+        private int resultCacheMaxEntries = 2000;
+
+        public int getCountPoolSize() {
+            return countPoolSize;
+        }
+
+        public void setCountPoolSize(int countPoolSize) {
+            this.countPoolSize = countPoolSize;
+        }
+
+        public int getCountCap() {
+            return countCap;
+        }
+
+        public void setCountCap(int countCap) {
+            this.countCap = countCap;
+        }
+
+        public int getResultCacheMaxEntries() {
+            return resultCacheMaxEntries;
+        }
+
+        public void setResultCacheMaxEntries(int resultCacheMaxEntries) {
+            this.resultCacheMaxEntries = resultCacheMaxEntries;
+        }
+    }
+
+    public static class Write {
+
+        /** 批量写入时每次 executeBatch 的行数 */
+        private int batchChunkSize = 1000;
+        /** 批量删除时每条 DELETE ... IN 语句的最大主键个数 */
+        private int deleteChunkSize = 500;
+        /** 更新未指定 partial 参数时是否默认按部分更新处理 */
+        private boolean partialUpdate = false;
+
+        public int getBatchChunkSize() {
+            return batchChunkSize;
+        }
+
+        public void setBatchChunkSize(int batchChunkSize) {
+            this.batchChunkSize = batchChunkSize;
+        }
+
+        public int getDeleteChunkSize() {
+            return deleteChunkSize;
+        }
+
+        public void setDeleteChunkSize(int deleteChunkSize) {
+            this.deleteChunkSize = deleteChunkSize;
+        }
+
+        public boolean isPartialUpdate() {
+            return partialUpdate;
+        }
+
+        public void setPartialUpdate(boolean partialUpdate) {
+            this.partialUpdate = partialUpdate;
+        }
+    }
+
+    public static class Password {
+
+        /** BCrypt 工作因子（4-31），每加 1 计算量翻倍 */
+        private int bcryptCost = 10;
+        /** 批量导入时并行计算密码哈希的线程数，0 表示 CPU 核数 */
+        private int hashPoolSize = 0;
+        /** 登录校验密码的线程数 */
+        private int loginPoolSize = 4;
+        /** 登录校验排队上限，超出时直接拒绝 */
+        private int loginQueueCapacity = 100;
+        /** 登录校验等待超时（毫秒） */
+        private long loginTimeoutMs = 5000;
+
+        public int getBcryptCost() {
+            return bcryptCost;
+        }
+
+        public void setBcryptCost(int bcryptCost) {
+            this.bcryptCost = bcryptCost;
+        }
+
+        public int getHashPoolSize() {
+            return hashPoolSize;
+        }
+
+        public void setHashPoolSize(int hashPoolSize) {
+            this.hashPoolSize = hashPoolSize;
+        }
+
+        public int getLoginPoolSize() {
+            return loginPoolSize;
+        }
+
+        public void setLoginPoolSize(int loginPoolSize) {
+            this.loginPoolSize = loginPoolSize;
+        }
+
+        public int getLoginQueueCapacity() {
+            return loginQueueCapacity;
+        }
+
+        public void setLoginQueueCapacity(int loginQueueCapacity) {
+            this.loginQueueCapacity = loginQueueCapacity;
+        }
+
+        public long getLoginTimeoutMs() {
+            return loginTimeoutMs;
+        }
+
+        public void setLoginTimeoutMs(long loginTimeoutMs) {
+            this.loginTimeoutMs = loginTimeoutMs;
+        }
+    }
+
+    public static class WriteBehind {
+
+        /** 每张表的队列容量（向上取整为 2 的幂） */
+        private int queueCapacity = 8192;
+        /** 队列积压达到该行数时立即刷写，也是单次组提交的最大行数 */
+        private int flushSize = 500;
+        /** 未达到 flushSize 时的最长刷写间隔（毫秒） */
+        private long flushIntervalMs = 200;
+        /** block 策略下队列满时的最长等待时间（毫秒），超时后拒绝写入 */
+        private long blockTimeoutMs = 1000;
+        /** spill 策略及刷写失败时的溢写目录 */
+        private String spillDir = "./data/spill";
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getFlushSize() {
+            return flushSize;
+        }
+
+        public void setFlushSize(int flushSize) {
+            this.flushSize = flushSize;
+        }
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+        public long getBlockTimeoutMs() {
+            return blockTimeoutMs;
+        }
+
+        public void setBlockTimeoutMs(long blockTimeoutMs) {
+            this.blockTimeoutMs = blockTimeoutMs;
+        }
+
+        public String getSpillDir() {
+            return spillDir;
+        }
+
+        public void setSpillDir(String spillDir) {
+            this.spillDir = spillDir;
+        }
+    }
+
+    public static class Logging {
+
+        /** 是否保存操作日志到 system_log */
+        private boolean saveOperationLog = false;
+        /** 操作日志队列容量（向上取整为 2 的幂） */
+        private int queueCapacity = 8192;
+        /** 单次批量写入的最大条数，队列积压达到该值时立即写入 */
+        private int flushSize = 500;
+        /** 最长写入间隔（毫秒） */
+        private long flushIntervalMs = 500;
+        /** 队列满时的策略：drop 丢弃并计数，block 等待 blockTimeoutMs 后丢弃 */
+        private String overflowPolicy = "drop";
+        /** block 策略的最长等待时间（毫秒） */
+        private long blockTimeoutMs = 50;
+        /** 记录的响应内容最大字符数，超出部分不再序列化 */
+        private int maxResponseChars = 2000;
+        /** 记录的请求参数最大字符数 */
+        private int maxParamsChars = 1000;
+        /** 耗时达到该值（毫秒）的请求总是完整记录 */
+        private long slowThresholdMs = 1000;
+        /** 成功且未超时请求的默认采样率（0-1） */
+        private double sampleRate = 0.01;
+        /** 按 URI（Ant 路径模式）覆盖采样率，按配置顺序取第一个匹配项 */
+        private Map<String, Double> uriSampleRates = new LinkedHashMap<>();
+        /** 按 URI 汇总统计的写入间隔（毫秒） */
+        private long aggregateFlushIntervalMs = 60000;
+        /** 汇总统计最多区分的 URI 数，超出部分合并到 "*" */
+        private int maxAggregateUris = 500;
+
+        public boolean isSaveOperationLog() {
+            return saveOperationLog;
+        }
+
+        public void setSaveOperationLog(boolean saveOperationLog) {
+            this.saveOperationLog = saveOperationLog;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getFlushSize() {
+            return flushSize;
+        }
+
+        public void setFlushSize(int flushSize) {
+            this.flushSize = flushSize;
+        }
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+        public String getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(String overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+
+        public long getBlockTimeoutMs() {
+            return blockTimeoutMs;
+        }
+
+        public void setBlockTimeoutMs(long blockTimeoutMs) {
+            this.blockTimeoutMs = blockTimeoutMs;
+        }
+
+        public int getMaxResponseChars() {
+            return maxResponseChars;
+        }
+
+        public void setMaxResponseChars(int maxResponseChars) {
+            this.maxResponseChars = maxResponseChars;
+        }
+
+        public int getMaxParamsChars() {
+            return maxParamsChars;
+        }
+
+        public void setMaxParamsChars(int maxParamsChars) {
+            this.maxParamsChars = maxParamsChars;
+        }
+
+        public long getSlowThresholdMs() {
+            return slowThresholdMs;
+        }
+
+        public void setSlowThresholdMs(long slowThresholdMs) {
+            this.slowThresholdMs = slowThresholdMs;
+        }
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public Map<String, Double> getUriSampleRates() {
+            return uriSampleRates;
+        }
+
+        public void setUriSampleRates(Map<String, Double> uriSampleRates) {
+            this.uriSampleRates = uriSampleRates;
+        }
+
+        public long getAggregateFlushIntervalMs() {
+            return aggregateFlushIntervalMs;
+        }
+
+        public void setAggregateFlushIntervalMs(long aggregateFlushIntervalMs) {
+            this.aggregateFlushIntervalMs = aggregateFlushIntervalMs;
+        }
+
+        public int getMaxAggregateUris() {
+            return maxAggregateUris;
+        }
+
+        public void setMaxAggregateUris(int maxAggregateUris) {
+            this.maxAggregateUris = maxAggregateUris;
+        }
+    }
+
+    public static class LogStorage {
+
+        /** 是否将操作日志按时间分桶写入 system_log_yyyyMMdd / system_log_wyyyyMMdd */
+        private boolean enabled = false;
+        /** 分桶粒度：daily / weekly */
+        private String bucket = "daily";
+        /** 保留的分桶个数（含当前分桶），更早的分桶整表删除；0 表示不清理 */
+        private int retentionBuckets = 30;
+        /** 维护任务（预建分桶、小时汇总、过期清理）的执行间隔（毫秒） */
+        private long maintenanceIntervalMs = 300000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getBucket() {
+            return bucket;
+        }
+
+        public void setBucket(String bucket) {
+            this.bucket = bucket;
+        }
+
+        public int getRetentionBuckets() {
+            return retentionBuckets;
+        }
+
+        public void setRetentionBuckets(int retentionBuckets) {
+            this.retentionBuckets = retentionBuckets;
+        }
+
+        public long getMaintenanceIntervalMs() {
+            return maintenanceIntervalMs;
+        }
+
+        public void setMaintenanceIntervalMs(long maintenanceIntervalMs) {
+            this.maintenanceIntervalMs = maintenanceIntervalMs;
+        }
     }
 }
@@ -0,0 +1,63 @@
+package com.ycbd.demo.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * 列表总数查询线程池。队列满时由调用线程执行，退化为串行查询而不是拒绝请求。
+     */
+    @Bean
+    public ThreadPoolTaskExecutor queryExecutor(AppProperties appProperties) {
+        int poolSize = Math.max(1, appProperties.getQuery().getCountPoolSize());
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(200);
+        executor.setThreadNamePrefix("query-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 批量导入时计算密码哈希的线程池（CPU 密集）。队列满时由调用线程执行。
+     */
+    @Bean
+    public ThreadPoolTaskExecutor passwordHashExecutor(AppProperties appProperties) {
+        int poolSize = appProperties.getPassword().getHashPoolSize();
+        if (poolSize <= 0) {
+            poolSize = Runtime.getRuntime().availableProcessors();
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("pwd-hash-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 登录密码校验线程池。线程数与排队数有上限，登录突发时超出部分直接拒绝，不占满 Servlet 线程做 BCrypt 计算。
+     */
+    @Bean
+    public ThreadPoolTaskExecutor loginExecutor(AppProperties appProperties) {
+        AppProperties.Password config = appProperties.getPassword();
+        int poolSize = Math.max(1, config.getLoginPoolSize());
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(Math.max(0, config.getLoginQueueCapacity()));
+        executor.setThreadNamePrefix("login-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
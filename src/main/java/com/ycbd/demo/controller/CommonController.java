@@ -1,10 +1,15 @@
 package com.ycbd.demo.controller;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -16,7 +21,11 @@ import org.springframework.web.bind.annotation.RestController;
 import com.ycbd.demo.service.CommonService;
 import com.ycbd.demo.utils.ApiResponse;
 
+import cn.hutool.core.convert.Convert;
 import cn.hutool.core.map.MapUtil;
+import cn.hutool.json.JSONUtil;
+
+import jakarta.servlet.http.HttpServletResponse;
 
 @RestController
 @RequestMapping("/api/common")
@@ -40,6 +49,33 @@ public class CommonController {
         }
     }
 
+    /**
+     * 插入或更新，按元数据声明的唯一键判断记录是否存在
+     */
+    @PostMapping("/upsert")
+    public ApiResponse<Map<String, Object>> upsert(
+            @RequestParam String targetTable,
+            @RequestBody Map<String, Object> data) {
+        try {
+            return commonService.upsertData(targetTable, data);
+        } catch (Exception e) {
+            logger.error("upsert失败", e);
+            return ApiResponse.failed("保存失败: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/upsertBatch")
+    public ApiResponse<Map<String, Object>> upsertBatch(
+            @RequestParam String targetTable,
+            @RequestBody List<Map<String, Object>> rows) {
+        try {
+            return commonService.batchUpsertData(targetTable, rows);
+        } catch (Exception e) {
+            logger.error("批量upsert失败", e);
+            return ApiResponse.failed("保存失败: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/list")
     public ApiResponse<Map<String, Object>> list(
             @RequestParam String targetTable,
@@ -56,9 +92,15 @@ public class CommonController {
 
     @PostMapping("/list")
     public ApiResponse<Map<String, Object>> listPost(
-            @RequestBody Map<String, Object> requestBody) {
+            @RequestBody Map<String, Object> requestBody,
+            HttpServletResponse response) {
         try {
            String targetTable=MapUtil.getStr(requestBody, "targetTable");
+           // 请求体中的 "stream": true 同样走流式响应（查询串 ?stream=true 由 listStreamPost 处理）
+           if (MapUtil.getBool(requestBody, "stream", false)) {
+               writeListStream(targetTable, requestBody, response);
+               return null;
+           }
               return commonService.getList(targetTable, requestBody);
         } catch (Exception e) {
             logger.error("POST方式查询失败", e);
@@ -66,6 +108,82 @@ public class CommonController {
         }
     }
 
+    /**
+     * 列表查询的流式响应（stream=true），响应结构与 /list 一致，由 ResultSet 直接写出 JSON
+     */
+    @GetMapping(value = "/list", params = "stream=true")
+    public void listStream(
+            @RequestParam String targetTable,
+            @RequestParam Map<String, Object> allParams,
+            HttpServletResponse response) {
+        writeListStream(targetTable, allParams, response);
+    }
+
+    @PostMapping(value = "/list", params = "stream=true")
+    public void listStreamPost(
+            @RequestBody Map<String, Object> requestBody,
+            HttpServletResponse response) {
+        writeListStream(MapUtil.getStr(requestBody, "targetTable"), requestBody, response);
+    }
+
+    private void writeListStream(String targetTable, Map<String, Object> params, HttpServletResponse response) {
+        response.setCharacterEncoding("UTF-8");
+        response.setContentType("application/json;charset=UTF-8");
+        try {
+            commonService.streamList(targetTable, params, response.getOutputStream());
+        } catch (IOException e) {
+            logger.info("列表流式响应被客户端中断: targetTable={}", targetTable);
+        } catch (Exception e) {
+            logger.error("查询失败", e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setCharacterEncoding("UTF-8");
+                response.setContentType("application/json;charset=UTF-8");
+                try {
+                    response.getWriter().write(JSONUtil.toJsonStr(ApiResponse.failed("查询失败: " + e.getMessage())));
+                } catch (IOException ignored) {
+                    // 客户端已断开
+                }
+            }
+        }
+    }
+
+    /**
+     * 流式导出（NDJSON / CSV），逐行写出，不受表大小影响
+     */
+    @GetMapping("/export")
+    public void export(
+            @RequestParam String targetTable,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam Map<String, Object> allParams,
+            HttpServletResponse response) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        response.setCharacterEncoding("UTF-8");
+        response.setContentType(csv ? "text/csv;charset=UTF-8" : "application/x-ndjson;charset=UTF-8");
+        // 表名尚未校验，按 RFC 6266 编码文件名，引号或非 ASCII 字符不会破坏响应头
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(targetTable + (csv ? ".csv" : ".ndjson"), StandardCharsets.UTF_8).build().toString());
+        try {
+            long rows = commonService.exportData(targetTable, allParams, format, response.getOutputStream());
+            logger.info("导出完成: targetTable={}, format={}, rows={}", targetTable, format, rows);
+        } catch (IOException e) {
+            // 客户端取消下载，结果集已关闭，无需再响应
+            logger.info("导出已被客户端取消: targetTable={}", targetTable);
+        } catch (Exception e) {
+            logger.error("导出失败", e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setCharacterEncoding("UTF-8");
+                response.setContentType("application/json;charset=UTF-8");
+                try {
+                    response.getWriter().write(JSONUtil.toJsonStr(ApiResponse.failed("导出失败: " + e.getMessage())));
+                } catch (IOException ignored) {
+                    // 客户端已断开
+                }
+            }
+        }
+    }
+
     @PostMapping("/delete")
     public ApiResponse<Object> delete(
             @RequestParam String targetTable,
@@ -78,6 +196,55 @@ public class CommonController {
         }
     }
 
+    /**
+     * 批量更新，请求体为数组，每行包含主键及要修改的字段
+     */
+    @PostMapping("/updateBatch")
+    public ApiResponse<Map<String, Object>> updateBatch(
+            @RequestParam String targetTable,
+            @RequestBody List<Map<String, Object>> rows) {
+        try {
+            return commonService.batchUpdateData(targetTable, rows);
+        } catch (Exception e) {
+            logger.error("批量更新失败", e);
+            return ApiResponse.failed("批量更新失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 批量删除，请求体：{"targetTable": "...", "ids": [1, 2, 3]}
+     */
+    @PostMapping("/deleteBatch")
+    public ApiResponse<Object> deleteBatch(@RequestBody Map<String, Object> requestBody) {
+        try {
+            String targetTable = MapUtil.getStr(requestBody, "targetTable");
+            List<Integer> ids = Convert.toList(Integer.class, requestBody.get("ids"));
+            return commonService.deleteBatchData(targetTable, ids);
+        } catch (Exception e) {
+            logger.error("批量删除失败", e);
+            return ApiResponse.failed("批量删除失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 多表原子批处理，请求体：{"operations": [{"op": "save|update|delete", "targetTable": "...", "ref": "...", "id": ..., "data": {...}}]}
+     */
+    @PostMapping("/batch")
+    public ApiResponse<Map<String, Object>> batch(@RequestBody Map<String, Object> requestBody) {
+        try {
+            Object operations = requestBody.get("operations");
+            if (!(operations instanceof List)) {
+                return ApiResponse.failed("operations必须为数组");
+            }
+            @SuppressWarnings("unchecked")
+            List<Object> list = (List<Object>) operations;
+            return commonService.executeBatch(list);
+        } catch (Exception e) {
+            logger.error("批处理失败", e);
+            return ApiResponse.failed("批处理失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 健康检查端点
      */
@@ -5,10 +5,12 @@ import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.ycbd.demo.service.CommonService;
+import com.ycbd.demo.service.JwtService;
 import com.ycbd.demo.utils.ApiResponse;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -16,12 +18,15 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 
 @RestController
 @RequestMapping("/api/core")
-@Tag(name = "核心接口", description = "用户注册与登录")
+@Tag(name = "核心接口", description = "用户注册、登录与注销")
 public class CoreController {
 
     @Autowired
     private CommonService commonService;
 
+    @Autowired
+    private JwtService jwtService;
+
     @PostMapping("/register")
     @Operation(summary = "用户注册")
     public ApiResponse<Map<String, Object>> register(@RequestBody Map<String, Object> userData) {
@@ -33,4 +38,11 @@ public class CoreController {
     public ApiResponse<Map<String, Object>> login(@RequestBody Map<String, Object> credentials) {
         return commonService.login(credentials);
     }
+
+    @PostMapping("/logout")
+    @Operation(summary = "用户注销", description = "吊销当前Token，过期前不能再使用")
+    public ApiResponse<Object> logout(@RequestHeader("Authorization") String authorization) {
+        jwtService.revoke(authorization.substring(7));
+        return ApiResponse.success();
+    }
 }
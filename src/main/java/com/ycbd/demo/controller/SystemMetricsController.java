@@ -0,0 +1,57 @@
+package com.ycbd.demo.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ycbd.demo.service.JwtService;
+import com.ycbd.demo.service.LogStorageService;
+import com.ycbd.demo.service.OperationLogService;
+import com.ycbd.demo.service.QueryPlanCache;
+import com.ycbd.demo.service.QueryResultCache;
+import com.ycbd.demo.service.WriteBehindService;
+import com.ycbd.demo.utils.ApiResponse;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+@RestController
+@RequestMapping("/api/system/metrics")
+@Tag(name = "系统指标", description = "缓存等运行时统计")
+public class SystemMetricsController {
+
+    @Autowired
+    private QueryPlanCache queryPlanCache;
+
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @Autowired
+    private WriteBehindService writeBehindService;
+
+    @Autowired
+    private OperationLogService operationLogService;
+
+    @Autowired
+    private LogStorageService logStorageService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @GetMapping
+    @Operation(summary = "获取运行时统计")
+    public ApiResponse<Map<String, Object>> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queryPlanCache", queryPlanCache.getStats());
+        metrics.put("queryResultCache", queryResultCache.getStats());
+        metrics.put("writeBehind", writeBehindService.getStats());
+        metrics.put("operationLog", operationLogService.getStats());
+        metrics.put("logStorage", logStorageService.getStats());
+        metrics.put("jwtCache", jwtService.getCacheStats());
+        return ApiResponse.success(metrics);
+    }
+}
@@ -1,11 +1,13 @@
 package com.ycbd.demo.mapper;
 
+import java.sql.Timestamp;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.session.ResultHandler;
 
 @Mapper
 public interface SystemMapper {
@@ -33,6 +35,83 @@ public interface SystemMapper {
             @Param("whereStr") String whereStr
     );
 
+    /**
+     * 获取数据列表（绑定变量版本）。whereSql 为 SqlWhereBuilder.Compiled#toMyBatisSql("whereParams")
+     * 的结果，其中的 #{whereParams[i]} 在 ${} 替换后由 MyBatis 解析为 JDBC 占位符。
+     * 结果逐行交给 handler，由调用方决定行的存储形式。
+     */
+    void getItemsDataPrepared(
+            @Param("table") String table,
+            @Param("columns") String columns,
+            @Param("joinString") String joinString,
+            @Param("whereSql") String whereSql,
+            @Param("whereParams") List<Object> whereParams,
+            @Param("groupByString") String groupByString,
+            @Param("sortByAndType") String sortByAndType,
+            @Param("pageSize") int pageSize,
+            @Param("pageIndex") int pageIndex,
+            ResultHandler<Map<String, Object>> handler
+    );
+
+    /**
+     * 获取数据总数（绑定变量版本）
+     */
+    int getDataCountPrepared(
+            @Param("table") String table,
+            @Param("joinString") String joinString,
+            @Param("whereSql") String whereSql,
+            @Param("whereParams") List<Object> whereParams
+    );
+
+    /**
+     * 获取封顶计数：最多统计 cap 行，超过时返回 cap
+     */
+    int getDataCountCapped(
+            @Param("table") String table,
+            @Param("joinString") String joinString,
+            @Param("whereSql") String whereSql,
+            @Param("whereParams") List<Object> whereParams,
+            @Param("cap") int cap
+    );
+
+    /**
+     * 从 information_schema 获取表行数估算值（MySQL），数据库不支持时抛出异常
+     */
+    Long getTableRowEstimate(@Param("table") String table);
+
+    /**
+     * 当前 schema 中名称（小写）匹配 LIKE 模式的表
+     */
+    List<String> listTableNames(@Param("pattern") String pattern);
+
+    /**
+     * 已汇总到 system_log_hourly 的最后一个小时
+     */
+    Timestamp getLogRollupWatermark();
+
+    /**
+     * system_log_aggregate 中不早于 from 的最早统计窗口开始时间
+     */
+    Timestamp getNextAggregateWindow(@Param("from") Timestamp from);
+
+    /**
+     * 将 [hourStart, hourEnd) 内的 system_log_aggregate 窗口按方法和 URI 汇总写入 system_log_hourly
+     */
+    int insertLogRollup(@Param("hourStart") Timestamp hourStart, @Param("hourEnd") Timestamp hourEnd);
+
+    /**
+     * 流式导出：逐行回调 handler，不在内存中构建结果列表
+     */
+    void exportItemsData(
+            @Param("table") String table,
+            @Param("columns") String columns,
+            @Param("joinString") String joinString,
+            @Param("whereSql") String whereSql,
+            @Param("whereParams") List<Object> whereParams,
+            @Param("sortByAndType") String sortByAndType,
+            ResultHandler<Map<String, Object>> handler
+    );
+
     /**
      * 获取表属性
      */
@@ -51,6 +130,21 @@ public interface SystemMapper {
      */
     List<Map<String, Object>> getValidationRules(@Param("tableName") String tableName);
 
+    /**
+     * 按多列取值集合查询已存在的记录（集合校验），由数据库按列定义比较取值
+     *
+     * @param primaryKey 主键字段
+     * @param columns 匹配字段
+     * @param tuples 取值集合，每项与 columns 一一对应
+     * @return 命中行，idx 为取值在 tuples 中的下标，id 为记录主键
+     */
+    List<Map<String, Object>> selectTupleMatches(
+            @Param("table") String table,
+            @Param("primaryKey") String primaryKey,
+            @Param("columns") List<String> columns,
+            @Param("tuples") List<List<Object>> tuples
+    );
+
     /**
      * 获取主键列名
      */
@@ -65,12 +159,23 @@ public interface SystemMapper {
     );
 
     /**
-     * 批量插入
+     * 插入或更新（INSERT ... ON DUPLICATE KEY UPDATE）
      */
-    int insertDataBath(
+    int upsertData(
             @Param("table") String table,
-            @Param("columns") String columns,
-            @Param("saveData") List<Map<String, Object>> saveData
+            @Param("columns") List<String> columns,
+            @Param("updateColumns") List<String> updateColumns,
+            @Param("data") Map<String, Object> data
+    );
+
+    /**
+     * 批量插入或更新，rows 中每行都须包含 columns 中的全部字段
+     */
+    int upsertDataBatch(
+            @Param("table") String table,
+            @Param("columns") List<String> columns,
+            @Param("updateColumns") List<String> updateColumns,
+            @Param("rows") List<Map<String, Object>> rows
     );
 
     /**
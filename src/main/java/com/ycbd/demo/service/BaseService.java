@@ -1,28 +1,44 @@
 package com.ycbd.demo.service;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.ycbd.demo.config.AppProperties;
 import com.ycbd.demo.mapper.SystemMapper;
+import com.ycbd.demo.utils.CompactRowHandler;
 import com.ycbd.demo.utils.SqlWhereBuilder;
 import com.ycbd.demo.utils.Tools;
 
 import cn.hutool.core.map.MapUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
-import cn.hutool.core.lang.TypeReference;
 
 @Service
 public class BaseService {
 
+    private static final Logger logger = LoggerFactory.getLogger(BaseService.class);
+
+    /** 单条语句的绑定参数上限（低于 MySQL 的 65535） */
+    private static final int MAX_BIND_PARAMS = 60000;
+
+    /** Mapper 中绑定 WHERE 参数列表的参数名 */
+    private static final String WHERE_PARAMS = "whereParams";
+
     @Autowired
     private SystemMapper systemMapper;
 
@@ -32,54 +48,173 @@ public class BaseService {
     @Autowired
     private DataPreprocessorService dataPreprocessorService;
 
+    @Autowired
+    private MetaService metaService;
+
+    @Autowired
+    private QueryPlanCache queryPlanCache;
+
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @Autowired
+    private BatchWriteService batchWriteService;
+
+    @Autowired
+    private LogStorageService logStorageService;
+
+    @Autowired
+    private AppProperties appProperties;
+
+    /** 数据库是否支持 information_schema 行数估算 */
+    private volatile boolean rowEstimateSupported = true;
+
+    /**
+     * 查询列表
+     */
+    public List<Map<String, Object>> queryList(String table, int pageIndex, int pageSize, String columns, Map<String, Object> params, String joinString, String sortByAndType, String groupByString) {
+        if (pageSize <= 0) {
+            pageSize = 10;
+        }
 
-    /** 全局字段映射缓存 key->真实列名 */
-    private static final Map<String, String> GLOBAL_FIELD_MAPPINGS_CACHE = new ConcurrentHashMap<>();
+        SqlWhereBuilder.Compiled where = compileFilteredWhere(table, params);
+        return queryCompiled(table, columns, joinString, where, groupByString, sortByAndType, pageSize, pageIndex * pageSize);
+    }
 
     /**
-     * 加载全局字段映射（sys_dict_item.category_code='FIELD_MAPPING'），带简单缓存。
+     * 按已编译的WHERE子句查询列表
+     *
+     * @param offset 跳过的行数
      */
-    private Map<String, String> getGlobalFieldMappings() {
-        if (!GLOBAL_FIELD_MAPPINGS_CACHE.isEmpty()) {
-            return GLOBAL_FIELD_MAPPINGS_CACHE;
+    public List<Map<String, Object>> queryCompiled(String table, String columns, String joinString, SqlWhereBuilder.Compiled where,
+            String groupByString, String sortByAndType, int pageSize, int offset) {
+        String whereSql = where.toMyBatisSql(WHERE_PARAMS);
+        List<String> sources = where.getSources();
+        Supplier<List<Map<String, Object>>> loader;
+        if (sources == null) {
+            loader = () -> selectList(table, columns, joinString, whereSql, where.getParams(), groupByString, sortByAndType, pageSize, offset);
+        } else if (StrUtil.isEmpty(joinString) && StrUtil.isEmpty(groupByString)) {
+            loader = () -> selectPartitioned(sources, columns, whereSql, where.getParams(), sortByAndType, pageSize, offset);
+        } else {
+            // JOIN / GROUP BY 的 WHERE 可能引用其他表，不下推
+            String source = logStorageService.unionSource(sources, null, null, 0);
+            loader = () -> selectList(source, columns, joinString, whereSql, where.getParams(), groupByString, sortByAndType, pageSize, offset);
         }
-        try {
-            // 直接使用 SystemMapper 查询字典项
-            List<Map<String, Object>> list = systemMapper.getItemsData(
-                    "sys_dict_item", "item_key,item_value", null,
-                    "sys_dict_item.category_code = 'FIELD_MAPPING'", null, null, 1000, 0);
-            for (Map<String, Object> row : list) {
-                String key = MapUtil.getStr(row, "item_key");
-                String val = MapUtil.getStr(row, "item_value");
-                if (StrUtil.isNotBlank(key) && StrUtil.isNotBlank(val)) {
-                    GLOBAL_FIELD_MAPPINGS_CACHE.putIfAbsent(key, val);
+        if (!cacheable(table, joinString)) {
+            return loader.get();
+        }
+        String key = QueryResultCache.key(where.getParams(), "list", sources, columns, whereSql, groupByString, sortByAndType, pageSize, offset);
+        return queryResultCache.get(table, key, loader);
+    }
+
+    /**
+     * 按时间分桶存储的表的列表查询。
+     * 排序与分桶顺序一致时按新到旧逐个分桶读取，取满一页即停止，需要跳过的行先用封顶计数整桶跳过；
+     * 否则各分支带 WHERE、ORDER BY 与 LIMIT(offset + pageSize) 合并后再做最终排序与分页
+     */
+    private List<Map<String, Object>> selectPartitioned(List<String> sources, String columns, String whereSql, List<Object> whereParams,
+            String sortByAndType, int pageSize, int offset) {
+        if (pageSize <= 0 || !LogStorageService.followsBucketOrder(sortByAndType)) {
+            String source = logStorageService.unionSource(sources, whereSql, sortByAndType, pageSize > 0 ? offset + pageSize : 0);
+            return selectList(source, columns, null, null, whereParams, null, sortByAndType, pageSize, offset);
+        }
+        List<Map<String, Object>> rows = new ArrayList<>(pageSize);
+        int skip = offset;
+        for (String physical : sources) {
+            String source = LogStorageService.aliased(physical);
+            if (skip > 0) {
+                int count = systemMapper.getDataCountCapped(source, null, whereSql, whereParams, skip);
+                if (count < skip) {
+                    skip -= count;
+                    continue;
                 }
             }
-        } catch (Exception ex) {
-            org.slf4j.LoggerFactory.getLogger(BaseService.class).warn("加载全局字段映射失败", ex);
+            rows.addAll(selectList(source, columns, null, whereSql, whereParams, null, sortByAndType, pageSize - rows.size(), skip));
+            skip = 0;
+            if (rows.size() >= pageSize) {
+                break;
+            }
         }
-        return GLOBAL_FIELD_MAPPINGS_CACHE;
+        return rows;
+    }
+
+    private List<Map<String, Object>> selectList(String table, String columns, String joinString, String whereSql, List<Object> whereParams,
+            String groupByString, String sortByAndType, int pageSize, int offset) {
+        // 结果行直接转为共享小写列名索引的紧凑行，避免 H2 返回大写列名导致获取失败，也无需再复制一次
+        CompactRowHandler handler = new CompactRowHandler(pageSize);
+        systemMapper.getItemsDataPrepared(table, columns, joinString,
+                whereSql, whereParams, groupByString, sortByAndType, pageSize, offset, handler);
+        return handler.getRows();
     }
 
     /**
-     * 查询列表
+     * 查询的 FROM 数据源：编译结果路由到多个物理表（如按时间分桶的 system_log）时为各分支带 WHERE 的合并子查询，否则为表名
+     *
+     * @param sortByAndType 下推到各分支的排序，null 表示不排序
+     * @param limit 每个分支最多返回的行数，0 表示不限
      */
-    public List<Map<String, Object>> queryList(String table, int pageIndex, int pageSize, String columns, Map<String, Object> params, String joinString, String sortByAndType, String groupByString) {
-        if (pageSize <= 0) {
-            pageSize = 10;
+    public String sourceOf(String table, SqlWhereBuilder.Compiled where, String sortByAndType, int limit) {
+        if (where.getSources() == null) {
+            return table;
         }
+        return logStorageService.unionSource(where.getSources(), where.toMyBatisSql(WHERE_PARAMS), sortByAndType, limit);
+    }
 
-        // 先应用隐式过滤规则
-        filterRuleService.enhanceFilters(table, params);
-        String whereStr = buildWhereClause(table, params);
+    /**
+     * 仅单表查询可使用结果缓存：JOIN 涉及的其他表写入时不会使缓存失效
+     */
+    private boolean cacheable(String table, String joinString) {
+        return StrUtil.isEmpty(joinString) && queryResultCache.isEnabled(table);
+    }
 
-        List<Map<String, Object>> raw = systemMapper.getItemsData(table, columns, joinString, whereStr, groupByString, sortByAndType, pageSize, pageIndex * pageSize);
-        // 将所有 key 统一转为小写，避免 H2 返回大写列名导致获取失败
-        List<Map<String, Object>> normalized = new ArrayList<>(raw.size());
-        for (Map<String, Object> item : raw) {
-            normalized.add(Tools.toLowerCaseKeyMap(item));
+    /**
+     * 构建列表查询的投影字段。
+     * 未指定 requestedColumns 时使用元数据中的列表字段（主键 + is_show_in_list），
+     * 指定时（逗号分隔，* 表示全部）逐个校验必须是表中已配置的字段；主键及 requiredColumns 总会包含在内。
+     *
+     * @return 形如 "table.a, table.b" 的字段列表，null 表示查询全部字段
+     */
+    public String buildProjection(String table, String requestedColumns, Collection<String> requiredColumns) {
+        TableMetadata metadata = metaService.getTableMetadata(table);
+        List<String> columns;
+        if (StrUtil.isBlank(requestedColumns)) {
+            columns = new ArrayList<>(metadata.getListColumns());
+        } else if ("*".equals(requestedColumns.trim())) {
+            return null;
+        } else {
+            columns = new ArrayList<>();
+            for (String item : requestedColumns.split(",")) {
+                String column = item.trim().toLowerCase();
+                if (column.isEmpty() || columns.contains(column)) {
+                    continue;
+                }
+                if (!metadata.hasColumn(column)) {
+                    throw new IllegalArgumentException("不支持的查询字段: " + column);
+                }
+                columns.add(column);
+            }
+        }
+        if (columns.isEmpty()) {
+            return null;
+        }
+        if (!columns.contains(metadata.getPrimaryKey())) {
+            columns.add(0, metadata.getPrimaryKey());
+        }
+        if (requiredColumns != null) {
+            for (String column : requiredColumns) {
+                if (!columns.contains(column)) {
+                    columns.add(column);
+                }
+            }
         }
-        return normalized;
+        StringBuilder sb = new StringBuilder();
+        for (String column : columns) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(table).append('.').append(column);
+        }
+        return sb.toString();
     }
 
     /**
@@ -95,9 +230,8 @@ public class BaseService {
      * 获取表配置
      */
     public Map<String, Object> getTableConfig(String table) {
-        Map<String, Object> params = new HashMap<>();
-        params.put("db_table", table);
-        return getOne("table_attribute", params);
+        Map<String, Object> tableAttr = metaService.getTableAttr(table);
+        return tableAttr.isEmpty() ? null : tableAttr;
     }
 
     /**
@@ -105,33 +239,20 @@ public class BaseService {
      */
     public List<Map<String, Object>> getColumnAttributes(String table, String attributeType) {
         try {
-            List<Map<String, Object>> raw = systemMapper.getColumnAttributes(table, attributeType);
-            List<Map<String, Object>> normalized = new ArrayList<>(raw.size());
-            for (Map<String, Object> item : raw) {
-                Map<String, Object> lower = Tools.toLowerCaseKeyMap(item);
-                // 关键字段取值也转小写，方便后续比较
-                Object colName = lower.get("column_name");
-                if (colName != null) {
-                    lower.put("column_name", colName.toString().toLowerCase());
-                }
-                Object qType = lower.get("query_type");
-                if (qType != null) {
-                    lower.put("query_type", qType.toString().toLowerCase());
-                }
-                Object cType = lower.get("column_type");
-                if (cType != null) {
-                    lower.put("column_type", cType.toString().toLowerCase());
-                }
-                Object isPri = lower.get("is_pri");
-                if (isPri != null) {
-                    lower.put("is_pri", isPri.toString().toLowerCase());
+            List<Map<String, Object>> attrs = metaService.getColumnAttrs(table);
+            if (StrUtil.isEmpty(attributeType)) {
+                return attrs;
+            }
+            List<Map<String, Object>> filtered = new ArrayList<>();
+            for (Map<String, Object> attr : attrs) {
+                if (attributeType.equals(MapUtil.getStr(attr, "edit_type"))) {
+                    filtered.add(attr);
                 }
-                normalized.add(lower);
             }
-            return normalized;
+            return filtered;
         } catch (Exception ex) {
             // 捕获异常并打印警告，但不阻止业务流程
-            org.slf4j.LoggerFactory.getLogger(BaseService.class).warn("获取列属性失败，返回空列表以继续流程", ex);
+            logger.warn("获取列属性失败，返回空列表以继续流程", ex);
             return java.util.Collections.emptyList();
         }
     }
@@ -147,8 +268,101 @@ public class BaseService {
      * 获取记录总数
      */
     public int count(String table, Map<String, Object> params, String joinString) {
-        String whereStr = buildWhereClause(table, params);
-        return systemMapper.getDataCount(table, joinString, whereStr);
+        SqlWhereBuilder.Compiled where = compileWhere(table, params);
+        return countCompiled(table, joinString, where);
+    }
+
+    /**
+     * 按已编译的WHERE子句获取记录总数
+     */
+    public int countCompiled(String table, String joinString, SqlWhereBuilder.Compiled where) {
+        String whereSql = where.toMyBatisSql(WHERE_PARAMS);
+        List<String> sources = where.getSources();
+        Supplier<Integer> loader;
+        if (sources == null) {
+            loader = () -> systemMapper.getDataCountPrepared(table, joinString, whereSql, where.getParams());
+        } else if (StrUtil.isEmpty(joinString)) {
+            // 按分桶分别计数后相加，每个分桶可以使用自身索引
+            loader = () -> {
+                int total = 0;
+                for (String physical : sources) {
+                    total += systemMapper.getDataCountPrepared(LogStorageService.aliased(physical), null, whereSql, where.getParams());
+                }
+                return total;
+            };
+        } else {
+            String source = logStorageService.unionSource(sources, null, null, 0);
+            loader = () -> systemMapper.getDataCountPrepared(source, joinString, whereSql, where.getParams());
+        }
+        if (!cacheable(table, joinString)) {
+            return loader.get();
+        }
+        return queryResultCache.get(table, QueryResultCache.key(where.getParams(), "count", sources, whereSql), loader);
+    }
+
+    /**
+     * 封顶计数：最多统计 cap 行
+     */
+    public int countCapped(String table, String joinString, SqlWhereBuilder.Compiled where, int cap) {
+        String whereSql = where.toMyBatisSql(WHERE_PARAMS);
+        List<String> sources = where.getSources();
+        Supplier<Integer> loader;
+        if (sources == null) {
+            loader = () -> systemMapper.getDataCountCapped(table, joinString, whereSql, where.getParams(), cap);
+        } else if (StrUtil.isEmpty(joinString)) {
+            // 按新到旧逐个分桶计数，达到上限即停止
+            loader = () -> {
+                int total = 0;
+                for (String physical : sources) {
+                    total += systemMapper.getDataCountCapped(LogStorageService.aliased(physical), null, whereSql, where.getParams(), cap - total);
+                    if (total >= cap) {
+                        break;
+                    }
+                }
+                return total;
+            };
+        } else {
+            String source = logStorageService.unionSource(sources, null, null, 0);
+            loader = () -> systemMapper.getDataCountCapped(source, joinString, whereSql, where.getParams(), cap);
+        }
+        if (!cacheable(table, joinString)) {
+            return loader.get();
+        }
+        return queryResultCache.get(table, QueryResultCache.key(where.getParams(), "capped", sources, whereSql, cap), loader);
+    }
+
+    /**
+     * 表行数估算值，获取失败时返回 null。
+     * 只有数据库不支持（information_schema 表或列不存在、语法错误）时才不再尝试；
+     * 连接超时、锁等待等临时错误只影响本次调用
+     */
+    public Long estimateCount(String table) {
+        if (!rowEstimateSupported) {
+            return null;
+        }
+        try {
+            if (!logStorageService.isPartitioned(table)) {
+                return systemMapper.getTableRowEstimate(table);
+            }
+            // 按时间分桶存储的表：各物理表估算值相加
+            long total = 0;
+            for (String physical : logStorageService.allTables()) {
+                Long estimate = systemMapper.getTableRowEstimate(physical);
+                if (estimate == null) {
+                    return null;
+                }
+                total += estimate;
+            }
+            return total;
+        } catch (InvalidDataAccessResourceUsageException ex) {
+            // 含 BadSqlGrammarException：表/列不存在或语法不支持
+            rowEstimateSupported = false;
+            logger.debug("当前数据库不支持表行数估算，改用封顶计数: {}", ex.getMessage());
+            return null;
+        } catch (Exception ex) {
+            logger.warn("获取表[{}]行数估算失败，本次改用封顶计数: {}", table, ex.getMessage());
+            return null;
+        }
     }
 
     /**
@@ -157,292 +371,451 @@ public class BaseService {
     @Transactional
     public long save(String table, Map<String, Object> data) {
         
-        // 数据预处理（默认值 / 审计字段 / 必填校验）
+        // 数据预处理（默认值 / 审计字段 / 必填校验 / MyBatis 类型兼容），就地修改 data
         dataPreprocessorService.preprocessForSave(table, data);
-        // 预处理数据，确保所有值都是MyBatis可以处理的类型
-        Map<String, Object> processedData = Tools.processMapForMyBatis(data);
-        systemMapper.insertData(table, processedData);
-        return MapUtil.getLong(processedData, "id");
+        systemMapper.insertData(logStorageService.isPartitioned(table) ? logStorageService.bucketFor(data) : table, data);
+        afterWrite(table);
+        return MapUtil.getLong(data, "id");
     }
 
     /**
-     * 批量保存
+     * 批量保存，按 app.write.batch-chunk-size 分批执行 JDBC 批处理
+     *
+     * @return 与 saveData 顺序一致的主键值
      */
     @Transactional
-    public void saveBatch(String table, List<Map<String, Object>> saveData) {
+    public List<Object> saveBatch(String table, List<Map<String, Object>> saveData) {
         if (saveData == null || saveData.isEmpty()) {
-            return;
+            return new ArrayList<>();
         }
 
-        // 由 DataPreprocessorService 处理批量逻辑
+        // 由 DataPreprocessorService 处理批量逻辑（含 MyBatis 类型兼容），就地修改各行
         saveData = dataPreprocessorService.preprocessBatchSave(table, saveData);
 
-        // 预处理数据（MyBatis 类型兼容）
-        List<Map<String, Object>> processedData = Tools.processMapListForMyBatis(saveData);
-
-        // 构建列名（使用第一条记录的顺序）
-        StringBuilder columnsBuilder = new StringBuilder();
-        for (String key : processedData.get(0).keySet()) {
-            if (columnsBuilder.length() > 0) {
-                columnsBuilder.append(",");
+        String primaryKey = metaService.getTableMetadata(table).getPrimaryKey();
+        List<Object> ids = insertRows(table, primaryKey, saveData);
+        for (int i = 0; i < ids.size(); i++) {
+            if (ids.get(i) != null) {
+                saveData.get(i).put(primaryKey, ids.get(i));
             }
-            columnsBuilder.append("`").append(key).append("`");
         }
+        afterWrite(table);
+        return ids;
+    }
 
-        systemMapper.insertDataBath(table, columnsBuilder.toString(), processedData);
+    /**
+     * 批量插入已完成预处理的行（异步写入的组提交、溢写回放），不再重复预处理；按时间分桶存储的表按 created_at 写入对应分桶
+     *
+     * @return 与 rows 顺序一致的主键值
+     */
+    @Transactional
+    public List<Object> insertPrepared(String table, List<Map<String, Object>> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Object> ids = insertRows(table, metaService.getTableMetadata(table).getPrimaryKey(), rows);
+        afterWrite(table);
+        return ids;
     }
 
     /**
-     * 更新数据
+     * 批量插入已完成预处理的行到与 table 结构相同的物理表（如按时间分桶的日志表），元数据与缓存失效按 table 处理
      */
     @Transactional
-    public void update(String table, Map<String, Object> data, Object id) {
-        String primaryKey = systemMapper.getPriKeyColumn(table);
-        if (primaryKey == null || primaryKey.isEmpty()) {
-            primaryKey = "id";
+    public List<Object> insertPrepared(String table, String physicalTable, List<Map<String, Object>> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return new ArrayList<>();
         }
+        String primaryKey = metaService.getTableMetadata(table).getPrimaryKey();
+        List<Object> ids = batchWriteService.insert(physicalTable, primaryKey, rows);
+        afterWrite(table);
+        return ids;
+    }
 
-        // 数据预处理
-        dataPreprocessorService.preprocessForUpdate(table, data);
+    /**
+     * 批量插入行；按时间分桶存储的表按各行 created_at 分组写入对应分桶，主键按原顺序返回
+     */
+    private List<Object> insertRows(String table, String primaryKey, List<Map<String, Object>> rows) {
+        if (!logStorageService.isPartitioned(table)) {
+            return batchWriteService.insert(table, primaryKey, rows);
+        }
+        Map<String, List<Integer>> indexesByTable = new LinkedHashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            indexesByTable.computeIfAbsent(logStorageService.bucketFor(rows.get(i)), k -> new ArrayList<>()).add(i);
+        }
+        List<Object> ids = new ArrayList<>(Collections.nCopies(rows.size(), null));
+        for (Map.Entry<String, List<Integer>> entry : indexesByTable.entrySet()) {
+            List<Map<String, Object>> group = new ArrayList<>(entry.getValue().size());
+            for (int i : entry.getValue()) {
+                group.add(rows.get(i));
+            }
+            List<Object> inserted = batchWriteService.insert(entry.getKey(), primaryKey, group);
+            for (int n = 0; n < inserted.size(); n++) {
+                ids.set(entry.getValue().get(n), inserted.get(n));
+            }
+        }
+        return ids;
+    }
 
-        // 预处理数据，确保所有值都是MyBatis可以处理的类型
-        Map<String, Object> processedData = Tools.processMapForMyBatis(data);
-        systemMapper.updateData(table, processedData, primaryKey, id);
+    /**
+     * 插入或更新（INSERT ... ON DUPLICATE KEY UPDATE）。
+     * 冲突键取 column_attribute.is_unique=1 的字段（未配置时为主键）；已存在时只更新请求中出现的字段和更新类审计字段，
+     * 创建类审计字段保留原值。
+     *
+     * @return 受影响行数（MySQL：1=插入，2=更新，0=无变化）
+     */
+    @Transactional
+    public int upsert(String table, Map<String, Object> data) {
+        rejectPartitioned(table, "插入或更新");
+        UpsertRow row = prepareUpsert(table, data);
+        int affected = systemMapper.upsertData(table, row.columns, row.updateColumns, row.data);
+        Object id = row.data.get("id");
+        if (id != null) {
+            data.put("id", id);
+        }
+        afterWrite(table);
+        return affected;
     }
 
     /**
-     * 批量更新
+     * 批量插入或更新：按列签名分组，每组每 app.write.batch-chunk-size 行（且绑定参数不超过上限）合并为一条语句
+     *
+     * @return 受影响行数合计
      */
     @Transactional
-    public void updateBatch(String table, Map<String, Object> data, List<Object> ids) {
-        if (ids == null || ids.isEmpty()) {
-            return;
+    public int upsertBatch(String table, List<Map<String, Object>> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return 0;
+        }
+        rejectPartitioned(table, "插入或更新");
+        Map<String, List<UpsertRow>> groups = new LinkedHashMap<>();
+        for (Map<String, Object> data : rows) {
+            UpsertRow row = prepareUpsert(table, data);
+            groups.computeIfAbsent(row.columns + "|" + row.updateColumns, k -> new ArrayList<>()).add(row);
+        }
+
+        int affected = 0;
+        int chunkSize = Math.max(1, appProperties.getWrite().getBatchChunkSize());
+        for (List<UpsertRow> group : groups.values()) {
+            UpsertRow first = group.get(0);
+            int size = Math.max(1, Math.min(chunkSize, MAX_BIND_PARAMS / first.columns.size()));
+            for (int from = 0; from < group.size(); from += size) {
+                List<Map<String, Object>> chunk = new ArrayList<>();
+                for (UpsertRow row : group.subList(from, Math.min(from + size, group.size()))) {
+                    chunk.add(row.data);
+                }
+                affected += systemMapper.upsertDataBatch(table, first.columns, first.updateColumns, chunk);
+            }
         }
+        afterWrite(table);
+        return affected;
+    }
 
-        String primaryKey = systemMapper.getPriKeyColumn(table);
-        if (primaryKey == null || primaryKey.isEmpty()) {
-            primaryKey = "id";
+    /**
+     * upsert 的单行预处理：按插入语义补齐默认值与审计字段，并计算冲突时需要更新的字段
+     */
+    private UpsertRow prepareUpsert(String table, Map<String, Object> data) {
+        TableMetadata metadata = metaService.getTableMetadata(table);
+        List<String> conflictKeys = metadata.getConflictKeys();
+        String primaryKey = metadata.getPrimaryKey();
+        for (String key : conflictKeys) {
+            if (!key.equals(primaryKey) && StrUtil.isBlankIfStr(data.get(key))) {
+                throw new IllegalArgumentException("upsert 缺少唯一键字段: " + key);
+            }
         }
 
-        // 数据预处理
-        dataPreprocessorService.preprocessForUpdate(table, data);
+        Set<String> supplied = new LinkedHashSet<>(data.keySet());
+        dataPreprocessorService.preprocessForSave(table, data);
 
-        // 预处理数据，确保所有值都是MyBatis可以处理的类型
-        Map<String, Object> processedData = Tools.processMapForMyBatis(data);
-        systemMapper.updateDataBatch(table, processedData, primaryKey, ids);
+        List<String> columns = new ArrayList<>(new TreeSet<>(data.keySet()));
+        List<String> updateColumns = new ArrayList<>();
+        for (String column : columns) {
+            if (conflictKeys.contains(column) || column.equals(primaryKey) || "id".equals(column)
+                    || dataPreprocessorService.isInsertOnlyAuditField(column)) {
+                continue;
+            }
+            if (supplied.contains(column) || dataPreprocessorService.isAuditField(column)) {
+                updateColumns.add(column);
+            }
+        }
+        if (updateColumns.isEmpty()) {
+            // ON DUPLICATE KEY UPDATE 至少需要一个字段，用冲突键自身赋值表示不做修改
+            updateColumns.add(conflictKeys.get(0));
+        }
+        return new UpsertRow(columns, updateColumns, data);
     }
 
     /**
-     * 删除数据
+     * 更新数据
      */
     @Transactional
-    public void delete(String table, Object id) {
-        String primaryKey = systemMapper.getPriKeyColumn(table);
-        if (primaryKey == null || primaryKey.isEmpty()) {
-            primaryKey = "id";
-        }
+    public void update(String table, Map<String, Object> data, Object id) {
+        String primaryKey = metaService.getTableMetadata(table).getPrimaryKey();
 
-        systemMapper.deleteData(table, primaryKey, id);
+        // 数据预处理（含 MyBatis 类型兼容）
+        dataPreprocessorService.preprocessForUpdate(table, data);
+        String physical = physicalTable(table, id);
+        if (physical != null) {
+            systemMapper.updateData(physical, data, primaryKey, id);
+        }
+        afterWrite(table);
     }
 
     /**
-     * 批量删除
+     * 部分更新：只写入请求中出现的字段及更新类审计字段，不读取原记录。
+     * 仅当某个必填字段被显式置空且无法自动填充时才读取原记录，
+     * 此时用原值补齐该字段，并借助 Tools.getDifferences 去掉与原值相同的字段。
+     *
+     * @return 实际写入的字段，记录不存在或没有变化时为空
      */
     @Transactional
-    public void deleteBatch(String table, List<Object> ids) {
-        if (ids == null || ids.isEmpty()) {
-            return;
+    public List<String> updatePartial(String table, Map<String, Object> data, Object id) {
+        String primaryKey = metaService.getTableMetadata(table).getPrimaryKey();
+        Set<String> unresolved = dataPreprocessorService.preprocessForPartialUpdate(table, data);
+        data.remove(primaryKey);
+        data.remove("id");
+
+        if (!unresolved.isEmpty()) {
+            Map<String, Object> old = getOne(table, MapUtil.of(primaryKey, id));
+            if (old == null) {
+                return new ArrayList<>();
+            }
+            for (String column : unresolved) {
+                data.put(column, old.get(column));
+            }
+            Set<String> changed = Tools.getDifferences(old, data).keySet();
+            data.keySet().retainAll(changed);
         }
 
-        String primaryKey = systemMapper.getPriKeyColumn(table);
-        if (primaryKey == null || primaryKey.isEmpty()) {
-            primaryKey = "id";
+        List<String> columns = new ArrayList<>();
+        boolean hasBusinessChange = false;
+        for (String column : data.keySet()) {
+            columns.add(column);
+            hasBusinessChange |= !dataPreprocessorService.isAuditField(column);
+        }
+        // 只剩审计字段说明业务数据没有变化，不再发出 UPDATE
+        if (!hasBusinessChange) {
+            return new ArrayList<>();
         }
 
-        systemMapper.deleteDataBatch(table, primaryKey, ids);
+        String physical = physicalTable(table, id);
+        if (physical == null || systemMapper.updateData(physical, data, primaryKey, id) == 0) {
+            return new ArrayList<>();
+        }
+        afterWrite(table);
+        return columns;
     }
 
     /**
-     * 获取用户完整信息（包含角色、组织机构等）
+     * 批量更新
      */
-    public Map<String, Object> getUserWithDetails(String username) {
-        return systemMapper.getUserWithDetails(username);
+    @Transactional
+    public void updateBatch(String table, Map<String, Object> data, List<Object> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+
+        String primaryKey = metaService.getTableMetadata(table).getPrimaryKey();
+
+        // 数据预处理（含 MyBatis 类型兼容）
+        dataPreprocessorService.preprocessForUpdate(table, data);
+        for (Map.Entry<String, List<Object>> entry : idsByTable(table, ids).entrySet()) {
+            systemMapper.updateDataBatch(entry.getKey(), data, primaryKey, entry.getValue());
+        }
+        afterWrite(table);
     }
 
     /**
-     * 构建WHERE子句
+     * 逐行不同取值的批量更新：每行包含主键和要修改的字段，按字段集合编译一次预处理计划，
+     * 再按 JDBC 批处理在同一事务中执行。不读取原记录，行为与部分更新一致。
+     *
+     * @return 与 rows 顺序一致的受影响行数
      */
-    private String buildWhereClause(String table, Map<String, Object> params) {
-        if (params == null || params.isEmpty()) {
-            return "";
+    @Transactional
+    public int[] updateRows(String table, List<Map<String, Object>> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return new int[0];
         }
-
-        // ---------- 1. 解析字段映射配置 ----------
-        Map<String, String> tableFieldMappings = new HashMap<>();
-        try {
-            // 直接查询表配置，避免递归调用
-            Map<String, Object> queryParams = new HashMap<>();
-            queryParams.put("db_table", table);
-            List<Map<String, Object>> tableCfgList = systemMapper.getItemsData(
-                    "table_attribute", "*", null, 
-                    "db_table = '" + table.replace("'", "''") + "'", 
-                    null, null, 1, 0);
-            Map<String, Object> tableCfg = tableCfgList.isEmpty() ? null : tableCfgList.get(0);
-            String defin = MapUtil.getStr(tableCfg, "defin_columns");
-            if (StrUtil.isNotBlank(defin)) {
-                JSONObject jo = JSONUtil.parseObj(defin);
-                if (jo.containsKey("field_mapping")) {
-                    tableFieldMappings = jo.getJSONObject("field_mapping")
-                            .toBean(new TypeReference<Map<String, String>>() {
-                            });
-                }
+        String primaryKey = metaService.getTableMetadata(table).getPrimaryKey();
+        Map<String, DataPreprocessorService.PartialUpdatePlan> plans = new HashMap<>();
+        // 整批共用一份用户上下文与时间戳
+        WritePlan.Stamp stamp = dataPreprocessorService.getPlan(table, true).stamp();
+        List<Object> ids = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Map<String, Object> row = rows.get(i);
+            Object id = row.remove(primaryKey);
+            Object aliasId = row.remove("id");
+            if (id == null) {
+                id = aliasId;
             }
-        } catch (Exception ignored) {
-        }
-        Map<String, String> globalMappings = getGlobalFieldMappings();
-
-        // ---------- 2. 构建可变参数 ----------
-        Map<String, Object> mutableParams = new HashMap<>(params);
-        // 跳过分页/排序保留参数
-        mutableParams.remove("pageindex");
-        mutableParams.remove("pagesize");
-        mutableParams.remove("sortbyandtype");
-        mutableParams.remove("offset");
-        mutableParams.remove("limit");
-        mutableParams.remove("columns");
-
-        // 特定表的无效字段过滤
-        if ("sys_user".equals(table)) {
-            mutableParams.remove("is_deleted");
-            mutableParams.remove("roles");
-            mutableParams.remove("roles_in");
-        }
-
-        // Step 1: 获取并转换字段属性
-        // 直接查询列属性，避免递归调用
-        List<Map<String, Object>> columnAttributes = systemMapper.getColumnAttributes(table, null);
-        // 将所有key转为小写
-        List<Map<String, Object>> normalizedAttrs = new ArrayList<>();
-        for (Map<String, Object> item : columnAttributes) {
-            Map<String, Object> lower = new HashMap<>();
-            for (Map.Entry<String, Object> entry : item.entrySet()) {
-                lower.put(entry.getKey().toLowerCase(), entry.getValue());
+            if (StrUtil.isBlankIfStr(id)) {
+                throw new IllegalArgumentException("第" + (i + 1) + "行缺少主键" + primaryKey);
             }
-            // 关键字段取值也转小写，方便后续比较
-            Object colName = lower.get("column_name");
-            if (colName != null) {
-                lower.put("column_name", colName.toString().toLowerCase());
+            String signature = String.join(",", new TreeSet<>(row.keySet()));
+            DataPreprocessorService.PartialUpdatePlan plan = plans.computeIfAbsent(signature,
+                    k -> dataPreprocessorService.compilePartialUpdate(table, row.keySet()));
+            Set<String> unresolved = plan.apply(row, stamp);
+            if (!unresolved.isEmpty()) {
+                throw new IllegalArgumentException("第" + (i + 1) + "行字段 " + unresolved + " 为必填项，不能为空");
             }
-            Object qType = lower.get("query_type");
-            if (qType != null) {
-                lower.put("query_type", qType.toString().toLowerCase());
+            if (row.isEmpty()) {
+                throw new IllegalArgumentException("第" + (i + 1) + "行没有要更新的字段");
             }
-            Object cType = lower.get("column_type");
-            if (cType != null) {
-                lower.put("column_type", cType.toString().toLowerCase());
+            ids.add(id);
+        }
+
+        int[] affected;
+        if (logStorageService.isPartitioned(table)) {
+            // 按主键所在分桶分组执行，受影响行数按原顺序回填，分桶已删除的行为 0
+            affected = new int[rows.size()];
+            Map<String, List<Integer>> indexesByTable = new LinkedHashMap<>();
+            for (int i = 0; i < ids.size(); i++) {
+                String physical = logStorageService.tableForId(ids.get(i));
+                if (physical != null) {
+                    indexesByTable.computeIfAbsent(physical, k -> new ArrayList<>()).add(i);
+                }
             }
-            Object isPri = lower.get("is_pri");
-            if (isPri != null) {
-                lower.put("is_pri", isPri.toString().toLowerCase());
+            for (Map.Entry<String, List<Integer>> entry : indexesByTable.entrySet()) {
+                List<Object> groupIds = new ArrayList<>(entry.getValue().size());
+                List<Map<String, Object>> groupRows = new ArrayList<>(entry.getValue().size());
+                for (int i : entry.getValue()) {
+                    groupIds.add(ids.get(i));
+                    groupRows.add(rows.get(i));
+                }
+                int[] groupAffected = batchWriteService.update(entry.getKey(), primaryKey, groupIds, groupRows);
+                for (int n = 0; n < groupAffected.length; n++) {
+                    affected[entry.getValue().get(n)] = groupAffected[n];
+                }
             }
-            normalizedAttrs.add(lower);
+        } else {
+            affected = batchWriteService.update(table, primaryKey, ids, rows);
         }
-        columnAttributes = normalizedAttrs;
-        List<Map<String, Object>> attributesForBuilder = new ArrayList<>();
-        Map<String, String> queryTypeOverrides = new HashMap<>();
+        afterWrite(table);
+        return affected;
+    }
 
-        // Step 2: 处理参数，支持后缀 _like/_in/_between/_range
-        Map<String, Object> processedParams = new HashMap<>();
+    /**
+     * 删除数据
+     */
+    @Transactional
+    public void delete(String table, Object id) {
+        String primaryKey = metaService.getTableMetadata(table).getPrimaryKey();
 
-        for (Map.Entry<String, Object> entry : mutableParams.entrySet()) {
-            String originalKey = entry.getKey();
-            Object valueObj = entry.getValue();
-            if (valueObj == null || "".equals(valueObj)) {
-                continue;
-            }
+        String physical = physicalTable(table, id);
+        if (physical != null) {
+            systemMapper.deleteData(physical, primaryKey, id);
+        }
+        afterWrite(table);
+    }
 
-            String columnName = originalKey;
-            String overrideQueryType = null;
-
-            // 处理特殊后缀
-            if (originalKey.endsWith("_like")) {
-                columnName = originalKey.substring(0, originalKey.length() - 5);
-                overrideQueryType = "like";
-            } else if (originalKey.endsWith("_in")) {
-                columnName = originalKey.substring(0, originalKey.length() - 3);
-                overrideQueryType = "in";
-            } else if (originalKey.endsWith("_between") || originalKey.endsWith("_range")) {
-                int idx = originalKey.lastIndexOf("_");
-                columnName = originalKey.substring(0, idx);
-                overrideQueryType = "range";
-            } else if (valueObj instanceof List || (valueObj instanceof String && ((String) valueObj).contains(","))) {
-                // 如果值为列表或以逗号分隔，自动识别为 IN 查询
-                overrideQueryType = "in";
-            }
+    /**
+     * 批量删除：主键去重后按 app.write.delete-chunk-size 拆分为多条 DELETE ... IN，在同一事务中执行
+     *
+     * @return 每批删除的记录数
+     */
+    @Transactional
+    public List<Integer> deleteBatch(String table, List<Object> ids) {
+        List<Integer> affected = new ArrayList<>();
+        if (ids == null || ids.isEmpty()) {
+            return affected;
+        }
 
-            // ---------- 字段映射 ----------
-            String mapped = tableFieldMappings.getOrDefault(columnName, globalMappings.get(columnName));
-            if (StrUtil.isNotBlank(mapped)) {
-                columnName = mapped;
+        String primaryKey = metaService.getTableMetadata(table).getPrimaryKey();
+        int chunkSize = Math.max(1, appProperties.getWrite().getDeleteChunkSize());
+        for (Map.Entry<String, List<Object>> entry : idsByTable(table, new LinkedHashSet<>(ids)).entrySet()) {
+            List<Object> distinctIds = entry.getValue();
+            for (int from = 0; from < distinctIds.size(); from += chunkSize) {
+                List<Object> chunk = distinctIds.subList(from, Math.min(from + chunkSize, distinctIds.size()));
+                affected.add(systemMapper.deleteDataBatch(entry.getKey(), primaryKey, chunk));
             }
+        }
+        afterWrite(table);
+        return affected;
+    }
 
-            // 转换值为字符串
-            String valueStr = Tools.convertValueToString(valueObj, overrideQueryType);
-            processedParams.put(columnName, valueStr);
+    /**
+     * 主键所在的物理表：按时间分桶存储的表按 ID 段定位分桶，分桶已删除时返回 null；其他表为表名本身
+     */
+    private String physicalTable(String table, Object id) {
+        return logStorageService.isPartitioned(table) ? logStorageService.tableForId(id) : table;
+    }
 
-            // 记录查询类型覆盖
-            if (overrideQueryType != null) {
-                queryTypeOverrides.put(columnName, overrideQueryType);
+    /**
+     * 按主键所在的物理表分组，保持原顺序；已删除分桶中的主键被忽略
+     */
+    private Map<String, List<Object>> idsByTable(String table, Collection<Object> ids) {
+        Map<String, List<Object>> result = new LinkedHashMap<>();
+        for (Object id : ids) {
+            String physical = physicalTable(table, id);
+            if (physical != null) {
+                result.computeIfAbsent(physical, k -> new ArrayList<>()).add(id);
             }
         }
+        return result;
+    }
 
-        // Step 3: 构建属性列表
-        for (Map<String, Object> attr : columnAttributes) {
-            String propName = MapUtil.getStr(attr, "column_name");
-            if (StrUtil.isBlank(propName) || !processedParams.containsKey(propName)) {
-                continue;
-            }
+    /**
+     * 按时间分桶存储的表不支持的写入方式：唯一约束只在单个分桶内生效，无法保证跨分桶的插入或更新语义
+     */
+    private void rejectPartitioned(String table, String operation) {
+        if (logStorageService.isPartitioned(table)) {
+            throw new IllegalArgumentException("表[" + table + "]按时间分桶存储，不支持" + operation);
+        }
+    }
 
-            Map<String, Object> convertedAttr = new HashMap<>();
-            convertedAttr.put("prop", propName);
-
-            // 应用查询类型覆盖
-            String queryType = queryTypeOverrides.containsKey(propName)
-                    ? queryTypeOverrides.get(propName)
-                    : MapUtil.getStr(attr, "query_type", MapUtil.getStr(attr, "querytype", "eq")).toLowerCase();
-            convertedAttr.put("queryType", queryType);
-
-            // 确定列类型
-            String showType = MapUtil.getStr(attr, "show_type");
-            boolean isPri = MapUtil.getBool(attr, "is_pri", false);
-            int columnType = 1; // 1=字符串, 2=数值, 3=布尔
-            if ("number".equalsIgnoreCase(showType)) {
-                columnType = 2;
-            } else if ("switch".equalsIgnoreCase(showType)) {
-                columnType = 3;
-            } else if ("hidden".equalsIgnoreCase(showType) && isPri) {
-                columnType = 2;
-            }
-            convertedAttr.put("columnType", columnType);
+    /**
+     * 写入后使依赖该表的元数据快照与查询结果缓存失效
+     */
+    private void afterWrite(String table) {
+        metaService.onTableWritten(table);
+        queryResultCache.onTableWritten(table);
+    }
 
-            attributesForBuilder.add(convertedAttr);
-        }
+    /**
+     * 获取用户完整信息（包含角色、组织机构等）
+     */
+    public Map<String, Object> getUserWithDetails(String username) {
+        return systemMapper.getUserWithDetails(username);
+    }
 
-        // 处理未在属性表中定义的字段
-        for (String propName : processedParams.keySet()) {
-            boolean exists = attributesForBuilder.stream()
-                    .anyMatch(attr -> propName.equals(MapUtil.getStr(attr, "prop")));
+    /**
+     * 应用隐式过滤规则后编译WHERE子句，列表查询与计数共用同一编译结果
+     */
+    public SqlWhereBuilder.Compiled compileFilteredWhere(String table, Map<String, Object> params) {
+        // 先应用隐式过滤规则
+        filterRuleService.enhanceFilters(table, params);
+        return compileWhere(table, params);
+    }
 
-            if (!exists) {
-                Map<String, Object> tempAttr = new HashMap<>();
-                tempAttr.put("prop", propName);
-                tempAttr.put("queryType", queryTypeOverrides.getOrDefault(propName, "eq"));
-                tempAttr.put("columnType", 1); // 默认为字符串类型
-                attributesForBuilder.add(tempAttr);
+    /**
+     * 编译WHERE子句：值以绑定变量传递，不再拼接进 SQL 文本。
+     * 后缀解析、字段映射与列类型解析按查询形态缓存在 {@link QueryPlanCache} 中。
+     * 按时间分桶存储的表同时按查询的时间范围解析路由到的物理表（见 {@link LogStorageService}）。
+     */
+    public SqlWhereBuilder.Compiled compileWhere(String table, Map<String, Object> params) {
+        SqlWhereBuilder.Compiled where = queryPlanCache.compile(table, params);
+        if (logStorageService.isPartitioned(table)) {
+            List<String> sources = logStorageService.resolveTables(params);
+            if (sources != null) {
+                where = where.withSources(sources);
             }
         }
+        return where;
+    }
+
+    /**
+     * 预处理后的 upsert 行
+     */
+    private static final class UpsertRow {
+
+        private final List<String> columns;
+        private final List<String> updateColumns;
+        private final Map<String, Object> data;
 
-        // 调用SqlWhereBuilder构建WHERE子句
-        return SqlWhereBuilder.build(table, processedParams, attributesForBuilder, true).toString();
+        private UpsertRow(List<String> columns, List<String> updateColumns, Map<String, Object> data) {
+            this.columns = columns;
+            this.updateColumns = updateColumns;
+            this.data = data;
+        }
     }
 }
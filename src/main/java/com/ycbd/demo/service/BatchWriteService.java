@@ -0,0 +1,257 @@
+package com.ycbd.demo.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.stereotype.Service;
+
+import com.ycbd.demo.config.AppProperties;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * JDBC 批量写入。
+ *
+ * 在当前事务绑定的连接上执行（插入与更新），按列签名（列名集合）为每种行结构复用一条 PreparedStatement，
+ * 以 addBatch 累积、每满 chunk 条 executeBatch 一次，SQL 长度与绑定参数个数不随数据量增长。
+ *
+ * 未使用 MyBatis ExecutorType.BATCH：同一 Spring 事务内已存在 SIMPLE 执行器的 SqlSession 时无法切换执行器类型。
+ */
+@Service
+public class BatchWriteService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchWriteService.class);
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private AppProperties appProperties;
+
+    private SQLExceptionTranslator exceptionTranslator;
+
+    @PostConstruct
+    public void init() {
+        exceptionTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+    }
+
+    /**
+     * 批量插入
+     *
+     * @param table 表名
+     * @param primaryKey 主键列名；行中未提供主键时取数据库生成的值
+     * @param rows 待插入的行（已完成预处理与类型转换）
+     * @return 与 rows 顺序一致的主键值，驱动未返回生成键时为 null
+     */
+    public List<Object> insert(String table, String primaryKey, List<Map<String, Object>> rows) {
+        int chunkSize = Math.max(1, appProperties.getWrite().getBatchChunkSize());
+        Object[] keys = new Object[rows.size()];
+        Map<String, Chunk> chunks = new LinkedHashMap<>();
+
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        String sql = null;
+        try {
+            for (int i = 0; i < rows.size(); i++) {
+                Map<String, Object> row = rows.get(i);
+                List<String> columns = new ArrayList<>(new TreeSet<>(row.keySet()));
+                String signature = String.join(",", columns);
+                Chunk chunk = chunks.get(signature);
+                if (chunk == null) {
+                    sql = buildInsertSql(table, columns);
+                    boolean generated = !columns.contains(primaryKey);
+                    PreparedStatement ps = generated
+                            ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                            : connection.prepareStatement(sql);
+                    chunk = new Chunk(sql, columns, ps, generated, chunkSize);
+                    chunks.put(signature, chunk);
+                }
+                sql = chunk.sql;
+                chunk.add(i, row, primaryKey, keys);
+                if (chunk.pending.size() >= chunkSize) {
+                    chunk.flush(keys);
+                }
+            }
+            for (Chunk chunk : chunks.values()) {
+                sql = chunk.sql;
+                chunk.flush(keys);
+            }
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("批量插入" + table, sql, e);
+        } finally {
+            for (Chunk chunk : chunks.values()) {
+                chunk.close();
+            }
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+        logger.debug("批量插入表[{}]完成，共 {} 行，{} 种列签名，chunk={}", table, rows.size(), chunks.size(), chunkSize);
+        return Arrays.asList(keys);
+    }
+
+    /**
+     * 批量更新：每行按各自的字段更新，同一字段集合的行共用一条 UPDATE ... WHERE 主键 = ?
+     *
+     * @param table 表名
+     * @param primaryKey 主键列名
+     * @param ids 与 rows 一一对应的主键值
+     * @param rows 每行要更新的字段（不含主键，已完成预处理与类型转换）
+     * @return 与 rows 顺序一致的受影响行数
+     */
+    public int[] update(String table, String primaryKey, List<Object> ids, List<Map<String, Object>> rows) {
+        int chunkSize = Math.max(1, appProperties.getWrite().getBatchChunkSize());
+        int[] affected = new int[rows.size()];
+        Map<String, Chunk> chunks = new LinkedHashMap<>();
+
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        String sql = null;
+        try {
+            for (int i = 0; i < rows.size(); i++) {
+                Map<String, Object> row = rows.get(i);
+                List<String> columns = new ArrayList<>(new TreeSet<>(row.keySet()));
+                String signature = String.join(",", columns);
+                Chunk chunk = chunks.get(signature);
+                if (chunk == null) {
+                    sql = buildUpdateSql(table, primaryKey, columns);
+                    chunk = new Chunk(sql, columns, connection.prepareStatement(sql), false, chunkSize);
+                    chunks.put(signature, chunk);
+                }
+                sql = chunk.sql;
+                chunk.bind(row);
+                chunk.ps.setObject(columns.size() + 1, ids.get(i));
+                chunk.ps.addBatch();
+                chunk.pending.add(i);
+                if (chunk.pending.size() >= chunkSize) {
+                    chunk.flushUpdate(affected);
+                }
+            }
+            for (Chunk chunk : chunks.values()) {
+                sql = chunk.sql;
+                chunk.flushUpdate(affected);
+            }
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("批量更新" + table, sql, e);
+        } finally {
+            for (Chunk chunk : chunks.values()) {
+                chunk.close();
+            }
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+        logger.debug("批量更新表[{}]完成，共 {} 行，{} 种列签名，chunk={}", table, rows.size(), chunks.size(), chunkSize);
+        return affected;
+    }
+
+    private String buildUpdateSql(String table, String primaryKey, List<String> columns) {
+        StringBuilder sb = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append('`').append(columns.get(i)).append("` = ?");
+        }
+        return sb.append(" WHERE `").append(primaryKey).append("` = ?").toString();
+    }
+
+    private String buildInsertSql(String table, List<String> columns) {
+        StringBuilder sb = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+                values.append(", ");
+            }
+            sb.append('`').append(columns.get(i)).append('`');
+            values.append('?');
+        }
+        return sb.append(") VALUES (").append(values).append(')').toString();
+    }
+
+    /**
+     * 同一列签名的待执行批次
+     */
+    private static final class Chunk {
+
+        private final String sql;
+        private final List<String> columns;
+        private final PreparedStatement ps;
+        private final boolean generated;
+        /** 已 addBatch 尚未执行的行在输入中的下标 */
+        private final List<Integer> pending;
+
+        private Chunk(String sql, List<String> columns, PreparedStatement ps, boolean generated, int chunkSize) {
+            this.sql = sql;
+            this.columns = columns;
+            this.ps = ps;
+            this.generated = generated;
+            this.pending = new ArrayList<>(chunkSize);
+        }
+
+        private void bind(Map<String, Object> row) throws SQLException {
+            for (int c = 0; c < columns.size(); c++) {
+                ps.setObject(c + 1, row.get(columns.get(c)));
+            }
+        }
+
+        private void add(int index, Map<String, Object> row, String primaryKey, Object[] keys) throws SQLException {
+            bind(row);
+            ps.addBatch();
+            pending.add(index);
+            if (!generated) {
+                keys[index] = row.get(primaryKey);
+            }
+        }
+
+        private void flush(Object[] keys) throws SQLException {
+            if (pending.isEmpty()) {
+                return;
+            }
+            ps.executeBatch();
+            if (generated) {
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    int i = 0;
+                    while (rs.next() && i < pending.size()) {
+                        keys[pending.get(i++)] = rs.getObject(1);
+                    }
+                }
+            }
+            ps.clearBatch();
+            pending.clear();
+        }
+
+        private void flushUpdate(int[] affected) throws SQLException {
+            if (pending.isEmpty()) {
+                return;
+            }
+            int[] counts = ps.executeBatch();
+            for (int i = 0; i < pending.size() && i < counts.length; i++) {
+                // SUCCESS_NO_INFO(-2) 表示驱动未返回行数，按成功 1 行计
+                affected[pending.get(i)] = counts[i] == Statement.SUCCESS_NO_INFO ? 1 : counts[i];
+            }
+            ps.clearBatch();
+            pending.clear();
+        }
+
+        private void close() {
+            try {
+                ps.close();
+            } catch (SQLException ignored) {
+                // 连接释放时会一并清理
+            }
+        }
+    }
+}
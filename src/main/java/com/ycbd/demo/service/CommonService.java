@@ -1,31 +1,51 @@
 package com.ycbd.demo.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ycbd.demo.config.AppProperties;
 import com.ycbd.demo.utils.ApiResponse;
 import com.ycbd.demo.utils.ResultCode;
+import com.ycbd.demo.utils.SqlWhereBuilder;
 import com.ycbd.demo.mapper.SystemMapper;
 
 import cn.hutool.core.map.MapUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.crypto.digest.BCrypt;
 
 @Service
 public class CommonService {
 
     private static final Logger logger = LoggerFactory.getLogger(CommonService.class);
 
+    /** 支持的总数模式 */
+    private static final Set<String> COUNT_MODES = new HashSet<>(Arrays.asList("exact", "none", "estimate", "capped"));
+
+    /** 批处理中引用前面操作结果的前缀 */
+    private static final String REF_PREFIX = "$ref:";
+
     @Autowired
     private BaseService baseService;
 
@@ -37,17 +57,117 @@ public class CommonService {
     
     @Autowired
     private TokenFieldConfigService tokenFieldConfigService;
+
+    @Autowired
+    private MetaService metaService;
+
+    @Autowired
+    private KeysetPaginationService keysetPaginationService;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private AppProperties appProperties;
+
+    @Autowired
+    @Qualifier("queryExecutor")
+    private Executor queryExecutor;
+
+    @Autowired
+    private ListStreamService listStreamService;
+
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PasswordService passwordService;
+
+    @Autowired
+    private DataPreprocessorService dataPreprocessorService;
+
+    @Autowired
+    private WriteBehindService writeBehindService;
  
 
     public ApiResponse<Map<String, Object>> getList(String targetTable, Map<String, Object> params) {
         if (StrUtil.isEmpty(targetTable)) {
             return ApiResponse.failed("targetTable不能为空");
         }
+        ListRequest request = prepareList(targetTable, params);
+
+        // 传入 cursor 参数（首页可为空）时使用键集分页，深分页不再扫描并丢弃前面的行
+        if (request.cursor != null) {
+            return ApiResponse.success(keysetPaginationService.page(targetTable, request.queryParams, request.sortByAndType,
+                    request.pageSize, request.cursor, request.requestedColumns));
+        }
+        if (!COUNT_MODES.contains(request.countMode)) {
+            return ApiResponse.failed("不支持的countMode: " + request.countMode);
+        }
+        String columns = baseService.buildProjection(targetTable, request.requestedColumns, null);
+
+        // 列表与计数共用同一编译结果
+        SqlWhereBuilder.Compiled where = baseService.compileFilteredWhere(targetTable, request.queryParams);
+
+        Map<String, Object> data = MapUtil.newHashMap();
+        CompletableFuture<Integer> totalFuture = startCount(request, where, data);
+
+        // 多取一行用于判断是否还有下一页
+        List<Map<String, Object>> items = baseService.queryCompiled(targetTable, columns, "", where, null,
+                request.sortByAndType, request.pageSize + 1, request.pageIndex * request.pageSize);
+        boolean hasMore = items.size() > request.pageSize;
+        if (hasMore) {
+            items = new ArrayList<>(items.subList(0, request.pageSize));
+        }
+        data.put("items", items);
+        data.put("hasMore", hasMore);
+
+        finishCount(request, totalFuture, data);
+        return ApiResponse.success(data);
+    }
+
+    /**
+     * 列表查询的流式响应：信封与数据行由 JsonGenerator 直接从 ResultSet 写出，不构建中间集合。
+     * 键集分页、开启了结果缓存的表仍走常规路径后整体序列化。
+     */
+    public void streamList(String targetTable, Map<String, Object> params, OutputStream out) throws IOException {
+        if (StrUtil.isEmpty(targetTable)) {
+            throw new IllegalArgumentException("targetTable不能为空");
+        }
+        if (params.containsKey("cursor") || queryResultCache.isEnabled(targetTable)) {
+            objectMapper.writeValue(out, getList(targetTable, params));
+            return;
+        }
+        ListRequest request = prepareList(targetTable, params);
+        if (!COUNT_MODES.contains(request.countMode)) {
+            throw new IllegalArgumentException("不支持的countMode: " + request.countMode);
+        }
+        String columns = baseService.buildProjection(targetTable, request.requestedColumns, null);
+        SqlWhereBuilder.Compiled where = baseService.compileFilteredWhere(targetTable, request.queryParams);
+
+        Map<String, Object> trailer = new LinkedHashMap<>();
+        CompletableFuture<Integer> totalFuture = startCount(request, where, trailer);
+        listStreamService.writeList(targetTable, columns, where, request.sortByAndType, request.pageSize,
+                request.pageIndex * request.pageSize, out, () -> {
+                    finishCount(request, totalFuture, trailer);
+                    return trailer;
+                });
+    }
+
+    /**
+     * 解析列表查询的公共参数
+     */
+    private ListRequest prepareList(String targetTable, Map<String, Object> params) {
+        ListRequest request = new ListRequest();
+        request.targetTable = targetTable;
         Map<String, Object> tableConfig = baseService.getTableConfig(targetTable);
-        String sortByAndType = MapUtil.getStr(params, "sortByAndType", MapUtil.getStr(tableConfig, "sort"));
+        request.sortByAndType = MapUtil.getStr(params, "sortByAndType", MapUtil.getStr(tableConfig, "sort"));
 
-        // 获取字段列表，避免硬编码
-        String columns = "*"; // 默认查询所有字段
+        // 投影字段：元数据中的列表字段（主键 + is_show_in_list），或经校验的 columns 参数
+        request.requestedColumns = MapUtil.getStr(params, "columns");
 
         // 从参数中移除非查询条件的参数
         Map<String, Object> queryParams = new HashMap<>(params);
@@ -55,25 +175,117 @@ public class CommonService {
         queryParams.remove("sortByAndType");
         queryParams.remove("pageIndex");
         queryParams.remove("pageSize");
+        queryParams.remove("cursor");
+        queryParams.remove("countMode");
+        queryParams.remove("countCap");
+        queryParams.remove("columns");
+        queryParams.remove("stream");
+        request.queryParams = queryParams;
 
         // 获取分页参数
-        int pageIndex = MapUtil.getInt(params, "pageIndex", 0);
+        request.pageIndex = MapUtil.getInt(params, "pageIndex", 0);
         int pageSize = MapUtil.getInt(params, "pageSize", 100);
+        request.pageSize = pageSize <= 0 ? 10 : pageSize;
+        if (params.containsKey("cursor")) {
+            request.cursor = StrUtil.nullToEmpty(MapUtil.getStr(params, "cursor"));
+        }
 
-        List<Map<String, Object>> items = baseService.queryList(targetTable, pageIndex, pageSize, columns, queryParams,
-                "", sortByAndType, null);
-        int total = baseService.count(targetTable, queryParams, "");
-        Map<String, Object> data = MapUtil.newHashMap();
-        data.put("items", items);
+        // 总数模式：exact(默认) / none / estimate / capped
+        request.countMode = MapUtil.getStr(params, "countMode", "exact").toLowerCase();
+        int countCap = MapUtil.getInt(params, "countCap", appProperties.getQuery().getCountCap());
+        request.countCap = countCap <= 0 ? appProperties.getQuery().getCountCap() : countCap;
+        return request;
+    }
+
+    /**
+     * 按总数模式启动计数，需要并发执行时返回 Future；模式标记写入 data
+     */
+    private CompletableFuture<Integer> startCount(ListRequest request, SqlWhereBuilder.Compiled where, Map<String, Object> data) {
+        String targetTable = request.targetTable;
+        switch (request.countMode) {
+            case "exact":
+                // 与分页查询并发执行，使用独立连接
+                return CompletableFuture.supplyAsync(() -> baseService.countCompiled(targetTable, "", where), queryExecutor);
+            case "capped":
+                data.put("totalCapped", false);
+                return submitCappedCount(targetTable, where, request.countCap);
+            case "estimate":
+                data.put("totalEstimated", true);
+                Long estimate = where.isEmpty() ? baseService.estimateCount(targetTable) : null;
+                if (estimate != null) {
+                    data.put("total", estimate);
+                    return null;
+                }
+                // 有过滤条件或数据库不支持估算时退化为封顶计数
+                data.put("totalCapped", false);
+                return submitCappedCount(targetTable, where, request.countCap);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 等待计数完成并写入 data
+     */
+    private void finishCount(ListRequest request, CompletableFuture<Integer> totalFuture, Map<String, Object> data) {
+        if (totalFuture == null) {
+            return;
+        }
+        int total = awaitCount(totalFuture);
+        if (!"exact".equals(request.countMode) && total > request.countCap) {
+            total = request.countCap;
+            data.put("totalCapped", true);
+        }
         data.put("total", total);
-        return ApiResponse.success(data);
+    }
+
+    /**
+     * 并发执行封顶计数，多统计一行用于判断是否超过上限
+     */
+    private CompletableFuture<Integer> submitCappedCount(String targetTable, SqlWhereBuilder.Compiled where, int countCap) {
+        return CompletableFuture.supplyAsync(() -> baseService.countCapped(targetTable, "", where, countCap + 1), queryExecutor);
+    }
+
+    private int awaitCount(CompletableFuture<Integer> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 流式导出数据，过滤条件与排序语义同 getList
+     *
+     * @return 写出的行数
+     */
+    public long exportData(String targetTable, Map<String, Object> params, String format, OutputStream out) throws IOException {
+        if (StrUtil.isEmpty(targetTable)) {
+            throw new IllegalArgumentException("targetTable不能为空");
+        }
+        Map<String, Object> tableConfig = baseService.getTableConfig(targetTable);
+        String sortByAndType = MapUtil.getStr(params, "sortByAndType", MapUtil.getStr(tableConfig, "sort"));
+
+        Map<String, Object> queryParams = new HashMap<>(params);
+        queryParams.remove("targetTable");
+        queryParams.remove("sortByAndType");
+        queryParams.remove("format");
+        return exportService.export(targetTable, queryParams, sortByAndType, format, out);
     }
 
     @Transactional
     public ApiResponse<Map<String, Object>> saveData(String targetTable, Map<String, Object> data) {
-        validateAttributes(targetTable, data);
         Integer id = MapUtil.getInt(data, "id");
         boolean isUpdate = id != null && id > 0;
+        // 部分更新：只写入请求中出现的字段，不读取、不重写整行
+        Object partialFlag = data.remove("partial");
+        boolean partial = isUpdate && (partialFlag != null
+                ? Boolean.parseBoolean(partialFlag.toString()) : appProperties.getWrite().isPartialUpdate());
+        validateAttributes(targetTable, data, partial);
 
         // 数据校验
         List<String> errors = validationService.validate(targetTable, data);
@@ -85,19 +297,11 @@ public class CommonService {
         preProcessData(targetTable, data, isUpdate);
 
         if (isUpdate) {
-            // 自动补全所有 NOT NULL 字段，防止部分字段未传导致数据库报错
-            Map<String, Object> old = baseService.getOne(targetTable, MapUtil.of("id", id));
-            if (old != null) {
-                for (Map.Entry<String, Object> entry : old.entrySet()) {
-                    String key = entry.getKey();
-                    if (!data.containsKey(key) && entry.getValue() != null) {
-                        data.put(key, entry.getValue());
-                    }
-                }
-            }
-            baseService.update(targetTable, data, id);
+            return ApiResponse.success(updateRecord(targetTable, data, id, partial));
+        } else if (metaService.getTableMetadata(targetTable).getWriteBehind() != null) {
+            // 异步写入：预处理在请求线程完成（依赖用户上下文），入队后即返回，不返回主键
             Map<String, Object> result = MapUtil.newHashMap();
-            result.put("id", id);
+            result.put("queued", enqueueWriteBehind(targetTable, Collections.singletonList(data)));
             return ApiResponse.success(result);
         } else {
             long newId = baseService.save(targetTable, data);
@@ -107,6 +311,89 @@ public class CommonService {
         }
     }
 
+    /**
+     * 预处理后放入表的异步写入队列
+     *
+     * @return 已接受的行数
+     */
+    private int enqueueWriteBehind(String targetTable, List<Map<String, Object>> rows) {
+        String policy = metaService.getTableMetadata(targetTable).getWriteBehind();
+        dataPreprocessorService.preprocessBatchSave(targetTable, rows);
+        int accepted = 0;
+        for (Map<String, Object> row : rows) {
+            if (writeBehindService.enqueue(targetTable, row, policy)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * 更新一条已完成校验与预处理的记录
+     *
+     * @return {id} 或部分更新时的 {id, updated}
+     */
+    private Map<String, Object> updateRecord(String targetTable, Map<String, Object> data, Object id, boolean partial) {
+        Map<String, Object> result = MapUtil.newHashMap();
+        result.put("id", id);
+        if (partial) {
+            result.put("updated", baseService.updatePartial(targetTable, data, id));
+            return result;
+        }
+        // 自动补全所有 NOT NULL 字段，防止部分字段未传导致数据库报错
+        Map<String, Object> old = baseService.getOne(targetTable, MapUtil.of("id", id));
+        if (old != null) {
+            for (Map.Entry<String, Object> entry : old.entrySet()) {
+                String key = entry.getKey();
+                if (!data.containsKey(key) && entry.getValue() != null) {
+                    data.put(key, entry.getValue());
+                }
+            }
+        }
+        baseService.update(targetTable, data, id);
+        return result;
+    }
+
+    /**
+     * 插入或更新：按 column_attribute.is_unique 声明的唯一键判断记录是否存在，一条语句完成。
+     * 不执行 column_check_property 中的唯一性校验（记录已存在正是更新的前提）。
+     */
+    @Transactional
+    public ApiResponse<Map<String, Object>> upsertData(String targetTable, Map<String, Object> data) {
+        if (StrUtil.isEmpty(targetTable)) {
+            return ApiResponse.failed("targetTable不能为空");
+        }
+        validateAttributes(targetTable, data);
+        preProcessData(targetTable, data, false);
+        int affected = baseService.upsert(targetTable, data);
+        Map<String, Object> result = MapUtil.newHashMap();
+        result.put("affected", affected);
+        result.put("id", data.get("id"));
+        return ApiResponse.success(result);
+    }
+
+    /**
+     * 批量插入或更新
+     */
+    @Transactional
+    public ApiResponse<Map<String, Object>> batchUpsertData(String targetTable, List<Map<String, Object>> rows) {
+        if (StrUtil.isEmpty(targetTable)) {
+            return ApiResponse.failed("targetTable不能为空");
+        }
+        Map<String, Object> result = MapUtil.newHashMap();
+        if (rows == null || rows.isEmpty()) {
+            result.put("affected", 0);
+            return ApiResponse.success(result);
+        }
+        for (Map<String, Object> data : rows) {
+            validateAttributes(targetTable, data);
+        }
+        passwordService.hashFields(rows);
+        result.put("affected", baseService.upsertBatch(targetTable, rows));
+        result.put("count", rows.size());
+        return ApiResponse.success(result);
+    }
+
     @Transactional
     public ApiResponse<Object> deleteData(String targetTable, Integer id) {
         if (id == null || id <= 0) {
@@ -122,18 +409,214 @@ public class CommonService {
             return ApiResponse.success();
         }
         for (Map<String, Object> data : saveData) {
-            logger.debug("[batchSaveData] 校验数据: {}", data);
             validateAttributes(targetTable, data);
-            // 数据校验
-            List<String> errors = validationService.validate(targetTable, data);
-            if (!errors.isEmpty()) {
-                logger.warn("[batchSaveData] 业务校验失败: {}", errors);
-                return ApiResponse.failed(String.join("; ", errors));
+        }
+        // 整批执行业务校验：唯一性规则每条只查询一次，并检查批内重复
+        String errors = joinBatchErrors(validationService.validateBatch(targetTable, saveData));
+        if (errors != null) {
+            logger.warn("[batchSaveData] 业务校验失败: {}", errors);
+            return ApiResponse.failed(errors);
+        }
+        // 密码字段并行计算哈希，全部完成后再入库
+        passwordService.hashFields(saveData);
+        if (metaService.getTableMetadata(targetTable).getWriteBehind() != null) {
+            Map<String, Object> result = MapUtil.newHashMap();
+            result.put("queued", enqueueWriteBehind(targetTable, saveData));
+            result.put("count", saveData.size());
+            return ApiResponse.success(result);
+        }
+        List<Object> ids = baseService.saveBatch(targetTable, saveData);
+        Map<String, Object> result = MapUtil.newHashMap();
+        result.put("ids", ids);
+        result.put("count", ids.size());
+        return ApiResponse.success(result);
+    }
+
+    /**
+     * 批量更新，每行为 {主键: 值, 字段: 新值...}，各行可修改不同字段，在同一事务中按 JDBC 批处理执行
+     */
+    @Transactional
+    public ApiResponse<Map<String, Object>> batchUpdateData(String targetTable, List<Map<String, Object>> rows) {
+        if (StrUtil.isEmpty(targetTable)) {
+            return ApiResponse.failed("targetTable不能为空");
+        }
+        Map<String, Object> result = MapUtil.newHashMap();
+        if (rows == null || rows.isEmpty()) {
+            result.put("affected", 0);
+            return ApiResponse.success(result);
+        }
+        for (Map<String, Object> row : rows) {
+            validateAttributes(targetTable, row, true);
+        }
+        String errors = joinBatchErrors(validationService.validateBatch(targetTable, rows));
+        if (errors != null) {
+            return ApiResponse.failed(errors);
+        }
+        passwordService.hashFields(rows);
+        int[] counts = baseService.updateRows(targetTable, rows);
+        int affected = 0;
+        for (int count : counts) {
+            affected += count;
+        }
+        result.put("affected", affected);
+        result.put("count", rows.size());
+        return ApiResponse.success(result);
+    }
+
+    /**
+     * 多表原子批处理：按顺序执行 save（插入）/update/delete 操作，全部在同一事务、同一连接中完成，任一操作失败整体回滚。
+     * 值为 "$ref:名称" 或 "$ref:名称.字段" 的字段引用同批中前面带 ref 的操作生成的主键或保存后的字段值；
+     * 连续的同表 save 合并为一次 JDBC 批量插入，遇到其他操作或被引用时先执行已累积的插入。
+     *
+     * @return {results: 每个操作的结果, count}
+     */
+    @Transactional
+    public ApiResponse<Map<String, Object>> executeBatch(List<Object> operations) {
+        if (operations == null || operations.isEmpty()) {
+            return ApiResponse.failed("operations不能为空");
+        }
+        List<Map<String, Object>> results = new ArrayList<>(operations.size());
+        // 各操作写入的数据行，供后续引用取值
+        List<Map<String, Object>> rows = new ArrayList<>(operations.size());
+        Map<String, Integer> refs = new HashMap<>();
+        PendingInserts pending = new PendingInserts();
+
+        for (int i = 0; i < operations.size(); i++) {
+            if (!(operations.get(i) instanceof Map)) {
+                throw new IllegalArgumentException("第" + (i + 1) + "个操作格式错误");
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> operation = (Map<String, Object>) operations.get(i);
+            String op = MapUtil.getStr(operation, "op");
+            String table = MapUtil.getStr(operation, "targetTable");
+            if (StrUtil.isEmpty(table)) {
+                throw new IllegalArgumentException("第" + (i + 1) + "个操作缺少targetTable");
+            }
+            Object rawData = operation.get("data");
+            if (rawData != null && !(rawData instanceof Map)) {
+                throw new IllegalArgumentException("第" + (i + 1) + "个操作的data必须为对象");
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> data = rawData != null ? (Map<String, Object>) rawData : new LinkedHashMap<>();
+            for (Map.Entry<String, Object> entry : data.entrySet()) {
+                entry.setValue(resolveRef(entry.getValue(), i, refs, rows, results, pending));
+            }
+            Object id = resolveRef(operation.get("id"), i, refs, rows, results, pending);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("op", op);
+            result.put("targetTable", table);
+            results.add(result);
+            rows.add(data);
+            String ref = MapUtil.getStr(operation, "ref");
+            if (StrUtil.isNotEmpty(ref) && refs.put(ref, i) != null) {
+                throw new IllegalArgumentException("第" + (i + 1) + "个操作的ref重复: " + ref);
+            }
+
+            if ("save".equals(op)) {
+                validateAttributes(table, data);
+                if (!table.equals(pending.table)) {
+                    flushInserts(pending, results);
+                    pending.table = table;
+                }
+                pending.indexes.add(i);
+                pending.rows.add(data);
+                continue;
+            }
+
+            flushInserts(pending, results);
+            String primaryKey = metaService.getTableMetadata(table).getPrimaryKey();
+            if (StrUtil.isBlankIfStr(id)) {
+                id = data.containsKey(primaryKey) ? data.get(primaryKey) : data.get("id");
+            }
+            if (StrUtil.isBlankIfStr(id)) {
+                throw new IllegalArgumentException("第" + (i + 1) + "个操作缺少主键" + primaryKey);
+            }
+            if ("update".equals(op)) {
+                Object partialFlag = operation.get("partial");
+                boolean partial = partialFlag != null
+                        ? Boolean.parseBoolean(partialFlag.toString()) : appProperties.getWrite().isPartialUpdate();
+                data.put(primaryKey, id);
+                validateAttributes(table, data, partial);
+                List<String> errors = validationService.validate(table, data);
+                if (!errors.isEmpty()) {
+                    throw new IllegalArgumentException("第" + (i + 1) + "个操作: " + String.join("; ", errors));
+                }
+                preProcessData(table, data, true);
+                result.putAll(updateRecord(table, data, id, partial));
+            } else if ("delete".equals(op)) {
+                baseService.delete(table, id);
+                result.put("id", id);
+            } else {
+                throw new IllegalArgumentException("第" + (i + 1) + "个操作的op不支持: " + op);
             }
-            preProcessData(targetTable, data, false);
         }
-        baseService.saveBatch(targetTable, saveData);
-        return ApiResponse.success();
+        flushInserts(pending, results);
+
+        Map<String, Object> response = MapUtil.newHashMap();
+        response.put("results", results);
+        response.put("count", results.size());
+        return ApiResponse.success(response);
+    }
+
+    /**
+     * 解析 "$ref:名称[.字段]" 引用；被引用的插入尚未执行时先执行累积的插入
+     */
+    private Object resolveRef(Object value, int index, Map<String, Integer> refs, List<Map<String, Object>> rows,
+            List<Map<String, Object>> results, PendingInserts pending) {
+        if (!(value instanceof String) || !((String) value).startsWith(REF_PREFIX)) {
+            return value;
+        }
+        String expression = ((String) value).substring(REF_PREFIX.length());
+        int dot = expression.indexOf('.');
+        String name = dot < 0 ? expression : expression.substring(0, dot);
+        Integer target = refs.get(name);
+        if (target == null) {
+            throw new IllegalArgumentException("第" + (index + 1) + "个操作引用了未定义的ref: " + name);
+        }
+        if (pending.indexes.contains(target)) {
+            flushInserts(pending, results);
+        }
+        Object resolved = dot < 0 ? results.get(target).get("id") : rows.get(target).get(expression.substring(dot + 1));
+        if (resolved == null) {
+            throw new IllegalArgumentException("第" + (index + 1) + "个操作的引用无法解析: " + value);
+        }
+        return resolved;
+    }
+
+    /**
+     * 执行累积的同表插入：整批业务校验、并行计算密码哈希后按 JDBC 批处理写入，并回填主键
+     */
+    private void flushInserts(PendingInserts pending, List<Map<String, Object>> results) {
+        if (pending.rows.isEmpty()) {
+            return;
+        }
+        List<List<String>> errors = validationService.validateBatch(pending.table, pending.rows);
+        for (int n = 0; n < errors.size(); n++) {
+            if (!errors.get(n).isEmpty()) {
+                throw new IllegalArgumentException("第" + (pending.indexes.get(n) + 1) + "个操作: " + String.join(", ", errors.get(n)));
+            }
+        }
+        passwordService.hashFields(pending.rows);
+        List<Object> ids = baseService.saveBatch(pending.table, pending.rows);
+        for (int n = 0; n < ids.size(); n++) {
+            results.get(pending.indexes.get(n)).put("id", ids.get(n));
+        }
+        pending.indexes.clear();
+        pending.rows.clear();
+    }
+
+    /**
+     * 合并批量校验的错误信息，带行号；全部通过时返回 null
+     */
+    private String joinBatchErrors(List<List<String>> errors) {
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < errors.size(); i++) {
+            if (!errors.get(i).isEmpty()) {
+                messages.add("第" + (i + 1) + "行: " + String.join(", ", errors.get(i)));
+            }
+        }
+        return messages.isEmpty() ? null : String.join("; ", messages);
     }
 
     /**
@@ -141,13 +624,26 @@ public class CommonService {
      */
     @Transactional
     public ApiResponse<Object> deleteBatchData(String targetTable, List<Integer> ids) {
+        if (StrUtil.isEmpty(targetTable)) {
+            return ApiResponse.failed("targetTable不能为空");
+        }
         if (ids == null || ids.isEmpty()) {
             return ApiResponse.success();
         }
         for (Integer id : ids) {
-            deleteData(targetTable, id);
+            if (id == null || id <= 0) {
+                return ApiResponse.failed("ID无效: " + id);
+            }
         }
-        return ApiResponse.success();
+        List<Integer> chunks = baseService.deleteBatch(targetTable, new ArrayList<>(ids));
+        int affected = 0;
+        for (Integer count : chunks) {
+            affected += count;
+        }
+        Map<String, Object> result = MapUtil.newHashMap();
+        result.put("affected", affected);
+        result.put("chunks", chunks);
+        return ApiResponse.success(result);
     }
 
     /**
@@ -169,7 +665,14 @@ public class CommonService {
                 return ApiResponse.failed("用户名错误");
             }
             String hashedPassword = MapUtil.getStr(user, "password");
-            boolean passwordValid = !StrUtil.isEmpty(hashedPassword) && BCrypt.checkpw(password, hashedPassword);
+            // 在独立的有界线程池上校验，排队已满时直接拒绝
+            boolean passwordValid;
+            try {
+                passwordValid = passwordService.matches(password, hashedPassword);
+            } catch (RejectedExecutionException e) {
+                logger.warn("登录校验排队已满，拒绝请求: {}", username);
+                return ApiResponse.failed("登录请求过多，请稍后再试");
+            }
             if (!passwordValid) {
                 logger.warn("密码验证失败: {}", username);
                 return ApiResponse.failed("密码错误");
@@ -192,14 +695,8 @@ public class CommonService {
     }
 
     private void preProcessData(String targetTable, Map<String, Object> data, boolean isUpdate) {
-        // 密码加密
-        if (data.containsKey("password") && StrUtil.isNotEmpty(MapUtil.getStr(data, "password"))) {
-            data.put("password", BCrypt.hashpw(MapUtil.getStr(data, "password")));
-        } else {
-            data.remove("password"); // 更新时不传密码则不修改
-        }
-
-       
+        // 密码加密，更新时不传密码则不修改
+        passwordService.hashField(data);
     }
 
     /**
@@ -209,17 +706,29 @@ public class CommonService {
      * @param data
      */
     public void validateAttributes(String table, Map<String, Object> data) {
-        List<Map<String, Object>> attrs = baseService.getColumnAttributes(table, null);
-        for (Map<String, Object> attr : attrs) {
-            String field = MapUtil.getStr(attr, "column_name");
-            boolean required = Boolean.TRUE.equals(attr.get("is_required")) || "1".equals(String.valueOf(attr.get("is_required")));
-            String dataType = MapUtil.getStr(attr, "field_type");
-            Integer maxLength = attr.get("len") != null ? Integer.parseInt(attr.get("len").toString()) : null;
+        validateAttributes(table, data, false);
+    }
+
+    /**
+     * 字段属性校验
+     *
+     * @param partial 部分更新时只校验请求中出现的字段
+     */
+    public void validateAttributes(String table, Map<String, Object> data, boolean partial) {
+        for (TableMetadata.Column column : metaService.getTableMetadata(table).getColumns()) {
+            String field = column.getName();
+            if (partial && !data.containsKey(field)) {
+                continue;
+            }
+            boolean required = column.isRequired();
+            String dataType = column.getFieldType();
+            Integer maxLength = column.getLen();
 
             Object value = data.get(field);
             logger.debug("字段校验: {} 必填={} 当前值={}", field, required, value);
 
-            if (required && (value == null || (value instanceof String && ((String) value).trim().isEmpty()))) {
+            // 部分更新时置空的必填字段由 BaseService.updatePartial 用原值补齐
+            if (required && !partial && (value == null || (value instanceof String && ((String) value).trim().isEmpty()))) {
                 throw new IllegalArgumentException("字段[" + field + "]为必填项，不能为空！");
             }
             // 类型校验
@@ -246,4 +755,31 @@ public class CommonService {
             }
         }
     }
+
+    /**
+     * 批处理中待合并执行的连续同表插入
+     */
+    private static final class PendingInserts {
+
+        private String table;
+        private final List<Integer> indexes = new ArrayList<>();
+        private final List<Map<String, Object>> rows = new ArrayList<>();
+    }
+
+    /**
+     * 列表查询参数
+     */
+    private static final class ListRequest {
+
+        private String targetTable;
+        private String sortByAndType;
+        private String requestedColumns;
+        private Map<String, Object> queryParams;
+        private int pageIndex;
+        private int pageSize;
+        /** 键集分页游标，未传 cursor 参数时为 null */
+        private String cursor;
+        private String countMode;
+        private int countCap;
+    }
 }
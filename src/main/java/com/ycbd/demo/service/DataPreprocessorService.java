@@ -1,21 +1,23 @@
 package com.ycbd.demo.service;
 
-import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import com.ycbd.demo.security.UserContext;
+import com.ycbd.demo.utils.Tools;
 
-import cn.hutool.core.map.MapUtil;
 import cn.hutool.core.util.StrUtil;
 
 /**
@@ -26,15 +28,36 @@ import cn.hutool.core.util.StrUtil;
  *
  * 优先级规则： 1. 传入数据优先 - 如果传入数据中已包含字段值，则不会被覆盖 2. 用户上下文数据 - 对于空值字段，尝试从用户上下文获取 3.
  * 默认值填充 - 如果上下文中也没有值，则使用默认值 4. 数据库默认值 - 依赖数据库层面处理默认值
+ *
+ * 以上规则按表编译为 {@link WritePlan}，批量写入时整批共用一份用户上下文与时间戳。
  */
 @Service
 public class DataPreprocessorService {
 
     private static final Logger logger = LoggerFactory.getLogger(DataPreprocessorService.class);
 
+    /** 标准审计字段 */
+    private static final Set<String> AUDIT_FIELDS = new HashSet<>(Arrays.asList(
+            "create_by", "created_at", "created_time", "create_time",
+            "update_by", "updated_at", "updated_time", "update_time",
+            "creator", "updater", "tenant_id"));
+
+    /** 仅插入时填充的审计字段，更新（含 upsert 的更新部分）时不得覆盖 */
+    private static final Set<String> INSERT_ONLY_AUDIT_FIELDS = new HashSet<>(Arrays.asList(
+            "create_by", "created_at", "created_time", "create_time", "creator", "tenant_id"));
+
+    /** 字段存在性校验时视为有效的标准字段（审计字段 + org_id） */
+    private static final Set<String> STANDARD_AUDIT_FIELDS = new HashSet<>(Arrays.asList(
+            "create_by", "created_at", "created_time", "create_time",
+            "update_by", "updated_at", "updated_time", "update_time",
+            "creator", "updater", "org_id", "tenant_id"));
+
     @Autowired
     private MetaService metaService;
 
+    /** 表名:I / 表名:U -> 编译后的写入计划，元数据版本变化时重新编译 */
+    private final Map<String, WritePlan> plans = new ConcurrentHashMap<>();
+
     /**
      * 单条保存前的预处理
      */
@@ -43,325 +66,226 @@ public class DataPreprocessorService {
         if (data.containsKey("id") && isEmpty(data.get("id"))) {
             data.remove("id");
         }
-        preprocessInternal(table, data, false);
+        getPlan(table, false).apply(data);
     }
 
     /**
      * 单条更新前的预处理
      */
     public void preprocessForUpdate(String table, Map<String, Object> data) {
-        preprocessInternal(table, data, true);
+        getPlan(table, true).apply(data);
     }
 
     /**
-     * 批量保存前的预处理（列补齐）
+     * 获取表的写入计划
+     *
+     * 计划按元数据快照编译一次：字段存在性、必填校验、用户上下文填充、默认值、审计字段合并为固定的处理器数组，
+     * 默认值表达式预先解析；预处理时就地修改行数据（含 MyBatis 类型兼容转换），不再复制。
+     *
+     * @param update true 为更新计划（跳过仅插入时填充的审计字段）
      */
-    public List<Map<String, Object>> preprocessBatchSave(String table, List<Map<String, Object>> list) {
-        if (list == null || list.isEmpty()) {
-            return list;
-        }
-
-        // 先逐条处理必填字段、默认值和审计字段
-        for (Map<String, Object> item : list) {
-            // 插入时移除ID字段，让数据库自动生成
-            if (item.containsKey("id") && isEmpty(item.get("id"))) {
-                item.remove("id");
-            }
-            preprocessInternal(table, item, false);
-        }
-
-        // 统一列集合（确保所有记录都有相同的字段集）
-        Set<String> allColumns = new LinkedHashSet<>();
-        for (Map<String, Object> map : list) {
-            allColumns.addAll(map.keySet());
-        }
-
-        // 构建属性映射，便于补默认值
-        List<Map<String, Object>> attrs = metaService.getColumnAttrs(table);
-        Map<String, Map<String, Object>> attrMap = attrs.stream()
-                .collect(java.util.stream.Collectors.toMap(m -> MapUtil.getStr(m, "column_name"), m -> m));
-
-        // 二次循环补齐缺失列
-        for (Map<String, Object> map : list) {
-            for (String col : allColumns) {
-                if (!map.containsKey(col)) {
-                    Map<String, Object> attr = attrMap.get(col);
-                    map.put(col, getDefaultValueForAttr(attr));
-                }
-            }
+    public WritePlan getPlan(String table, boolean update) {
+        TableMetadata metadata = metaService.getTableMetadata(table);
+        String key = table + (update ? ":U" : ":I");
+        WritePlan plan = plans.get(key);
+        if (plan == null || plan.getVersion() != metadata.getVersion()) {
+            plan = new WritePlan(metadata, update, STANDARD_AUDIT_FIELDS, AUDIT_FIELDS, INSERT_ONLY_AUDIT_FIELDS);
+            plans.put(key, plan);
+            logger.debug("编译表[{}]的{}计划", table, update ? "更新" : "插入");
         }
-        return list;
+        return plan;
     }
 
-    // -------------------- 内部实现 ---------------------
     /**
-     * 预处理内部实现
+     * 部分更新前的预处理：只处理请求中出现的字段（空值按用户上下文、默认值填充），并刷新更新类审计字段。
+     * 未出现的字段保持数据库中的原值，不做必填校验和默认值填充。
      *
-     * 处理流程： 1. 验证字段存在性 - 确保数据中的字段在列属性表中存在 2. 必填字段验证 - 先验证，确保不符合必填条件立即抛出异常 -
-     * 如果字段有默认值、能从用户上下文获取或是审计字段，则不抛出异常 3. 自动填充处理 - 对空值字段进行填充 - 优先从用户上下文获取 -
-     * 其次使用默认值 4. 审计字段处理 - 根据操作类型(插入/更新)填充审计字段
+     * @return 值为空、无法自动填充且为必填的字段，需由调用方读取原值补齐
      */
-    private void preprocessInternal(String table, Map<String, Object> data, boolean isUpdate) {
-        List<Map<String, Object>> attrs = metaService.getColumnAttrs(table);
-        Map<String, Map<String, Object>> attrMap = attrs.stream()
-                .collect(java.util.stream.Collectors.toMap(m -> MapUtil.getStr(m, "column_name"), m -> m));
-
-        // 验证数据中的字段是否都存在于列属性表中
-        validateFieldsExist(table, data, attrMap);
-
-        // 第一步：必填字段校验 - 先验证，确保不符合必填条件立即抛出异常
-        validateRequiredFields(attrs, data);
-
-        // 第二步：自动填充处理 - 包括用户上下文字段和默认值字段
-        processEmptyFields(attrs, data);
-
-        // 第三步：审计字段处理 - 只在没有值时填充
-        processAuditFields(attrMap, data, isUpdate);
+    public Set<String> preprocessForPartialUpdate(String table, Map<String, Object> data) {
+        return compilePartialUpdate(table, data.keySet()).apply(data);
     }
 
     /**
-     * 验证数据中的字段是否都存在于列属性表中 如果发现不存在的字段，记录警告日志并从数据中移除
+     * 按字段集合编译部分更新的预处理计划。字段有效性和需要检查空值的列只计算一次，
+     * 批量更新时同一字段集合的所有行共用一个计划。
+     *
+     * @param table 表名
+     * @param fields 请求中出现的字段
      */
-    private void validateFieldsExist(String table, Map<String, Object> data, Map<String, Map<String, Object>> attrMap) {
-        // 获取列属性表中定义的所有字段名
-        Set<String> validColumns = new HashSet<>(attrMap.keySet());
-
-        // 添加标准审计字段到有效字段集合中
-        addStandardAuditFields(validColumns);
-
-        // 添加特殊系统字段，如id
-        validColumns.add("id");
-
-        // 检查数据中的每个字段是否存在于有效字段集合中
-        Set<String> invalidFields = data.keySet().stream()
-                .filter(key -> !validColumns.contains(key))
-                .collect(Collectors.toSet());
-
-        // 如果有无效字段，记录警告并从数据中移除
+    public PartialUpdatePlan compilePartialUpdate(String table, Collection<String> fields) {
+        TableMetadata metadata = metaService.getTableMetadata(table);
+        Set<String> invalidFields = new LinkedHashSet<>();
+        List<CheckColumn> checkColumns = new ArrayList<>();
+        for (String field : fields) {
+            TableMetadata.Column column = metadata.getColumn(field);
+            if (column == null) {
+                if (!STANDARD_AUDIT_FIELDS.contains(field) && !"id".equals(field)) {
+                    invalidFields.add(field);
+                }
+            } else if (!isAuditField(field)) {
+                // 默认值表达式在编译时解析一次
+                checkColumns.add(new CheckColumn(column.getName(), column.isRequired(),
+                        WritePlan.DefaultValue.of(column.getDefaultValue())));
+            }
+        }
         if (!invalidFields.isEmpty()) {
             logger.warn("表[{}]中发现无效字段: {}，这些字段将被忽略", table, invalidFields);
-            invalidFields.forEach(data::remove);
         }
+        return new PartialUpdatePlan(getPlan(table, true), invalidFields, checkColumns);
     }
 
     /**
-     * 添加标准审计字段到有效字段集合中
+     * 部分更新的预处理计划，见 {@link #compilePartialUpdate}
      */
-    private void addStandardAuditFields(Set<String> validColumns) {
-        // 标准审计字段列表
-        String[] standardAuditFields = {
-            "create_by", "created_at", "created_time", "create_time",
-            "update_by", "updated_at", "updated_time", "update_time",
-            "creator", "updater", "org_id", "tenant_id"
-        };
+    public final class PartialUpdatePlan {
 
-        for (String field : standardAuditFields) {
-            validColumns.add(field);
+        private final WritePlan updatePlan;
+        private final Set<String> invalidFields;
+        private final CheckColumn[] checkColumns;
+
+        private PartialUpdatePlan(WritePlan updatePlan, Set<String> invalidFields, List<CheckColumn> checkColumns) {
+            this.updatePlan = updatePlan;
+            this.invalidFields = invalidFields;
+            this.checkColumns = checkColumns.toArray(new CheckColumn[0]);
         }
-    }
 
-    /**
-     * 必填字段校验
-     *
-     * 验证逻辑： 1. 检查必填字段是否存在且非空 2. 如果不存在或为空，检查是否为自动填充字段： - 有默认值的字段 - 能从用户上下文获取的字段
-     * - 审计字段 3. 如果不是自动填充字段，则抛出异常 4. 如果是自动填充字段，则记录日志并继续处理
-     */
-    private void validateRequiredFields(List<Map<String, Object>> attrs, Map<String, Object> data) {
-        Map<String, Object> userContext = UserContext.getUser();
-
-        for (Map<String, Object> attr : attrs) {
-            String columnName = MapUtil.getStr(attr, "column_name");
-            boolean required = MapUtil.getBool(attr, "is_required", false);
-
-            if (required && (!data.containsKey(columnName) || isEmpty(data.get(columnName)))) {
-                // 检查字段是否有数据库默认值或代码中的默认值
-                Object defaultValue = attr.get("default_value");
-                boolean hasDefaultValue = defaultValue != null && !defaultValue.toString().isEmpty();
-
-                // 检查字段是否可以从用户上下文获取
-                boolean canGetFromUserContext = userContext != null
-                        && userContext.containsKey(columnName)
-                        && isNotEmpty(userContext.get(columnName));
-
-                // 检查是否为审计字段
-                boolean isAudit = isAuditField(columnName);
-
-                // 如果字段没有默认值、不能从用户上下文获取且不是审计字段，则抛出异常
-                if (!hasDefaultValue && !canGetFromUserContext && !isAudit) {
-                    throw new IllegalArgumentException("字段 [" + columnName + "] 为必填项，不能为空");
-                } else {
-                    logger.debug("必填字段 [{}] 将通过自动填充处理", columnName);
+        /**
+         * 读取当前用户上下文与时间戳，批量更新时整批共用一份
+         */
+        public WritePlan.Stamp stamp() {
+            return updatePlan.stamp();
+        }
+
+        /**
+         * 对一行数据执行预处理
+         *
+         * @return 值为空、无法自动填充且为必填的字段
+         */
+        public Set<String> apply(Map<String, Object> data) {
+            return apply(data, stamp());
+        }
+
+        /**
+         * 使用给定的上下文对一行数据执行预处理
+         *
+         * @return 值为空、无法自动填充且为必填的字段
+         */
+        public Set<String> apply(Map<String, Object> data, WritePlan.Stamp stamp) {
+            data.keySet().removeAll(invalidFields);
+            data.replaceAll((key, value) -> Tools.toMyBatisValue(value));
+
+            Map<String, Object> userContext = stamp.getUserContext();
+            Set<String> unresolved = null;
+            for (CheckColumn column : checkColumns) {
+                if (isNotEmpty(data.get(column.name))) {
+                    continue;
+                }
+                if (userContext != null && isNotEmpty(userContext.get(column.name))) {
+                    data.put(column.name, userContext.get(column.name));
+                } else if (column.defaultValue != null) {
+                    data.put(column.name, column.defaultValue.get());
+                } else if (column.required) {
+                    if (unresolved == null) {
+                        unresolved = new LinkedHashSet<>();
+                    }
+                    unresolved.add(column.name);
                 }
             }
+
+            updatePlan.stampAudit(data, stamp);
+            return unresolved != null ? unresolved : Collections.emptySet();
         }
     }
 
     /**
-     * 判断字段是否为审计字段
+     * 部分更新中需要检查空值的列：是否必填及预解析的默认值
      */
-    private boolean isAuditField(String fieldName) {
-        // 标准审计字段列表
-        String[] auditFields = {
-            "create_by", "created_at", "created_time", "create_time",
-            "update_by", "updated_at", "updated_time", "update_time",
-            "creator", "updater",  "tenant_id"
-        };
+    private static final class CheckColumn {
 
-        for (String field : auditFields) {
-            if (field.equals(fieldName)) {
-                return true;
-            }
+        private final String name;
+        private final boolean required;
+        private final WritePlan.DefaultValue defaultValue;
+
+        private CheckColumn(String name, boolean required, WritePlan.DefaultValue defaultValue) {
+            this.name = name;
+            this.required = required;
+            this.defaultValue = defaultValue;
         }
-        return false;
     }
 
     /**
-     * 处理空值字段
-     *
-     * 填充优先顺序： 1. 传入数据 - 如果数据中已有非空值，保留现有值 2. 用户上下文 - 如果数据中没有值，尝试从用户上下文获取 3. 默认值
-     * - 如果上下文中也没有，使用列属性表中的默认值
-     *
-     * 注意： - 审计字段由专门的方法处理，这里会跳过 - 只处理空值字段，不会覆盖已有值
+     * 批量保存前的预处理（列补齐）。整批共用一个插入计划和一份用户上下文/时间戳。
      */
-    private void processEmptyFields(List<Map<String, Object>> attrs, Map<String, Object> data) {
-        Map<String, Object> userContext = UserContext.getUser();
-
-        for (Map<String, Object> attr : attrs) {
-            String columnName = MapUtil.getStr(attr, "column_name");
+    public List<Map<String, Object>> preprocessBatchSave(String table, List<Map<String, Object>> list) {
+        if (list == null || list.isEmpty()) {
+            return list;
+        }
 
-            // 如果数据中已有非空值，优先使用现有值 (最高优先级)
-            if (data.containsKey(columnName) && isNotEmpty(data.get(columnName))) {
-                continue;
+        WritePlan plan = getPlan(table, false);
+        WritePlan.Stamp stamp = plan.stamp();
+        // 先逐条处理必填字段、默认值和审计字段
+        for (Map<String, Object> item : list) {
+            // 插入时移除ID字段，让数据库自动生成
+            if (item.containsKey("id") && isEmpty(item.get("id"))) {
+                item.remove("id");
             }
+            plan.apply(item, stamp);
+        }
 
-            // 跳过审计字段，它们将在processAuditFields中处理
-            if (isAuditField(columnName)) {
-                continue;
-            }
+        // 统一列集合（确保所有记录都有相同的字段集）
+        Set<String> allColumns = new LinkedHashSet<>();
+        for (Map<String, Object> map : list) {
+            allColumns.addAll(map.keySet());
+        }
+
+        // 使用元数据快照补默认值
+        TableMetadata metadata = metaService.getTableMetadata(table);
 
-            // 尝试从用户上下文填充 (第二优先级)
-            if (userContext != null && userContext.containsKey(columnName) && isNotEmpty(userContext.get(columnName))) {
-                data.put(columnName, userContext.get(columnName));
-                logger.debug("从用户上下文填充字段: {}={}", columnName, userContext.get(columnName));
+        // 二次循环补齐缺失列，字段数与全集相同的行无需检查
+        for (Map<String, Object> map : list) {
+            if (map.size() == allColumns.size()) {
                 continue;
             }
-
-            // 尝试使用默认值填充 (第三优先级)
-            // 这里处理的是列属性表中的默认值表达式，如userId()、now()等
-            Object defaultValue = attr.get("default_value");
-            if (defaultValue != null && !defaultValue.toString().isEmpty()) {
-                Object defaultVal = getDefaultValueForAttr(attr);
-                if (defaultVal != null) {
-                    data.put(columnName, defaultVal);
-                    logger.debug("使用默认值填充字段: {}={}", columnName, defaultVal);
+            for (String col : allColumns) {
+                if (!map.containsKey(col)) {
+                    map.put(col, getDefaultValueForAttr(metadata.getColumn(col)));
                 }
             }
         }
+        return list;
     }
 
     /**
-     * 处理审计字段 - 只在没有值时填充
+     * 判断字段是否为审计字段
      */
-    private void processAuditFields(Map<String, Map<String, Object>> attrMap, Map<String, Object> data, boolean isUpdate) {
-        Map<String, Object> userContext = UserContext.getUser();
-        if (userContext == null) {
-            return;
-        }
-
-        Integer userId = UserContext.getUserId();
-        Timestamp now = new Timestamp(System.currentTimeMillis());
-        String username = UserContext.getUserName();
-        Integer orgId = UserContext.getOrgId();
-        Object tenantId = userContext.get("tenantId");
-
-        // 标准审计字段数组: [字段名, 是否仅插入时填充, 填充值]
-        Object[][] auditFields = {
-            {"create_by", true, userId},
-            {"created_at", true, now},
-            {"created_time", true, now},
-            {"create_time", true, now},
-            {"update_by", false, userId},
-            {"updated_at", false, now},
-            {"updated_time", false, now},
-            {"update_time", false, now},
-            {"creator", true, username},
-            {"updater", false, username},
-          
-            {"tenant_id", true, tenantId}
-        };
-
-        // 遍历所有可能的审计字段
-        for (Object[] fieldInfo : auditFields) {
-            String fieldName = (String) fieldInfo[0];
-            boolean isInsertOnly = (Boolean) fieldInfo[1];
-            Object value = fieldInfo[2];
-
-            // 跳过不存在的字段
-            if (!attrMap.containsKey(fieldName)) {
-                continue;
-            }
-
-            // 更新操作且字段仅在插入时填充，则跳过
-            if (isUpdate && isInsertOnly) {
-                continue;
-            }
-
-            // 如果数据中已有非空值，优先使用现有值 (始终尊重用户提供的数据)
-            if (data.containsKey(fieldName) && isNotEmpty(data.get(fieldName))) {
-                continue;
-            }
+    public boolean isAuditField(String fieldName) {
+        return AUDIT_FIELDS.contains(fieldName);
+    }
 
-            // 如果有值才填充
-            if (value != null) {
-                data.put(fieldName, value);
-            }
-        }
+    /**
+     * 判断字段是否为仅插入时填充的审计字段
+     */
+    public boolean isInsertOnlyAuditField(String fieldName) {
+        return INSERT_ONLY_AUDIT_FIELDS.contains(fieldName);
     }
 
     /**
      * 根据列属性返回默认值
      */
-    private Object getDefaultValueForAttr(Map<String, Object> attr) {
-        if (attr == null) {
+    private Object getDefaultValueForAttr(TableMetadata.Column column) {
+        if (column == null) {
             return null;
         }
 
-        // 从column_attribute表的default_value字段获取默认值
-        Object dv = attr.get("default_value");
-        if (dv != null && !dv.toString().isEmpty()) {
-            // 支持特殊表达式 now() uuid() 等
-            String dvStr = dv.toString();
-            if ("now()".equalsIgnoreCase(dvStr)) {
-                return new Timestamp(System.currentTimeMillis());
-            }
-            if ("uuid()".equalsIgnoreCase(dvStr)) {
-                return java.util.UUID.randomUUID().toString();
-            }
-            if ("userId()".equalsIgnoreCase(dvStr)) {
-                return UserContext.getUserId();
-            }
-            if ("username()".equalsIgnoreCase(dvStr)) {
-                return UserContext.getUserName();
-            }
-            if ("orgId()".equalsIgnoreCase(dvStr)) {
-                return UserContext.getOrgId();
-            }
-
-            // 如果是数字类型的字符串，转换为Integer
-            if (dvStr.matches("^\\d+$")) {
-                try {
-                    return Integer.parseInt(dvStr);
-                } catch (NumberFormatException e) {
-                    return dvStr;
-                }
-            }
-
-            return dv;
+        // 从column_attribute表的default_value字段获取默认值（表达式与写入计划共用同一解析规则）
+        WritePlan.DefaultValue defaultValue = WritePlan.DefaultValue.of(column.getDefaultValue());
+        if (defaultValue != null) {
+            return defaultValue.get();
         }
 
         // type 推断 (1=string default, 2=number, 3=bool/date?)
-        int columnType = MapUtil.getInt(attr, "column_type", 1);
-        switch (columnType) {
+        switch (column.getColumnType()) {
             case 2:
             case 3:
                 return 0;
@@ -0,0 +1,280 @@
+package com.ycbd.demo.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ycbd.demo.mapper.SystemMapper;
+import com.ycbd.demo.utils.SqlWhereBuilder;
+
+import cn.hutool.core.date.DateUtil;
+
+/**
+ * 数据导出服务。
+ *
+ * 通过 MyBatis ResultHandler 逐行读取结果集并直接写入输出流（NDJSON 或 CSV），
+ * 不构建整页 List，内存占用与表大小无关；客户端断开时停止读取并释放语句。
+ */
+@Service
+public class ExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+    /** 每写出多少行刷新一次输出流 */
+    private static final int FLUSH_INTERVAL = 500;
+
+    @Autowired
+    private SystemMapper systemMapper;
+
+    @Autowired
+    private BaseService baseService;
+
+    @Autowired
+    private MetaService metaService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 导出列：优先 is_export=1 的字段，其次 is_show_in_list=1 的字段，都未配置时导出全部字段；
+     * 表没有字段配置时返回空列表，表示 SELECT *
+     */
+    public List<String> resolveExportColumns(String table) {
+        TableMetadata metadata = metaService.getTableMetadata(table);
+        List<String> export = new ArrayList<>();
+        List<String> shown = new ArrayList<>();
+        List<String> all = new ArrayList<>();
+        for (TableMetadata.Column column : metadata.getColumns()) {
+            all.add(column.getName());
+            if (column.isExport()) {
+                export.add(column.getName());
+            }
+            if (column.isShowInList()) {
+                shown.add(column.getName());
+            }
+        }
+        return !export.isEmpty() ? export : !shown.isEmpty() ? shown : all;
+    }
+
+    /**
+     * 导出数据
+     *
+     * @param table 表名
+     * @param queryParams 查询条件，语义与列表查询一致
+     * @param sortByAndType 排序
+     * @param format ndjson 或 csv
+     * @param out 输出流
+     * @return 写出的行数
+     */
+    public long export(String table, Map<String, Object> queryParams, String sortByAndType, String format, OutputStream out)
+            throws IOException {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        List<String> columns = resolveExportColumns(table);
+        String selectColumns = null;
+        if (!columns.isEmpty()) {
+            StringBuilder sb = new StringBuilder();
+            for (String column : columns) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(table).append('.').append(column);
+            }
+            selectColumns = sb.toString();
+        }
+
+        SqlWhereBuilder.Compiled where = baseService.compileFilteredWhere(table, queryParams);
+        RowWriter writer = csv ? new CsvRowWriter(out, columns) : new NdjsonRowWriter(out, columns);
+        systemMapper.exportItemsData(baseService.sourceOf(table, where, sortByAndType, 0), selectColumns, null, where.toMyBatisSql("whereParams"), where.getParams(),
+                sortByAndType, writer);
+        if (writer.aborted != null) {
+            logger.info("导出表[{}]时客户端断开，已写出 {} 行", table, writer.count);
+            throw writer.aborted;
+        }
+        writer.finish();
+        logger.debug("导出表[{}]完成，共 {} 行", table, writer.count);
+        return writer.count;
+    }
+
+    /**
+     * 逐行写出的结果处理器。写出失败（通常是客户端断开）时停止读取结果集
+     */
+    private abstract static class RowWriter implements ResultHandler<Map<String, Object>> {
+
+        protected List<String> columns;
+        private long count;
+        private IOException aborted;
+
+        RowWriter(List<String> columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public void handleResult(ResultContext<? extends Map<String, Object>> context) {
+            Map<String, Object> row = context.getResultObject();
+            try {
+                if (columns.isEmpty()) {
+                    // SELECT * 时以首行的列作为导出列
+                    List<String> keys = new ArrayList<>();
+                    for (String key : row.keySet()) {
+                        keys.add(key.toLowerCase());
+                    }
+                    columns = keys;
+                    start();
+                }
+                writeRow(row);
+                if (++count % FLUSH_INTERVAL == 0) {
+                    flush();
+                }
+            } catch (IOException e) {
+                aborted = e;
+                context.stop();
+            }
+        }
+
+        /**
+         * 按列名取值，兼容 H2 返回大写列名
+         */
+        protected Object value(Map<String, Object> row, String column) {
+            Object value = row.get(column);
+            if (value == null) {
+                value = row.get(column.toUpperCase());
+            }
+            return value;
+        }
+
+        /** 列确定后调用一次（CSV 写表头） */
+        protected abstract void start() throws IOException;
+
+        protected abstract void writeRow(Map<String, Object> row) throws IOException;
+
+        protected abstract void flush() throws IOException;
+
+        /** 全部行写出后调用 */
+        protected void finish() throws IOException {
+            if (count == 0 && !columns.isEmpty()) {
+                start();
+            }
+            flush();
+        }
+    }
+
+    /**
+     * NDJSON：每行一个 JSON 对象，日期等类型按全局 ObjectMapper 规则序列化
+     */
+    private final class NdjsonRowWriter extends RowWriter {
+
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(OutputStream out, List<String> columns) throws IOException {
+            super(columns);
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // 行之间只用换行分隔，不使用默认的空格
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        protected void start() {
+            // NDJSON 无表头
+        }
+
+        @Override
+        protected void writeRow(Map<String, Object> row) throws IOException {
+            generator.writeStartObject();
+            for (String column : columns) {
+                generator.writeFieldName(column);
+                generator.writeObject(value(row, column));
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        protected void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        protected void finish() throws IOException {
+            super.finish();
+            generator.close();
+        }
+    }
+
+    /**
+     * CSV：UTF-8 带 BOM（便于 Excel 识别），字段含逗号、引号或换行时加引号
+     */
+    private static final class CsvRowWriter extends RowWriter {
+
+        private final Writer writer;
+        private boolean started;
+
+        CsvRowWriter(OutputStream out, List<String> columns) throws IOException {
+            super(columns);
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            if (!columns.isEmpty()) {
+                start();
+            }
+        }
+
+        @Override
+        protected void start() throws IOException {
+            if (started) {
+                return;
+            }
+            started = true;
+            writer.write('\uFEFF');
+            writeLine(new ArrayList<>(columns));
+        }
+
+        @Override
+        protected void writeRow(Map<String, Object> row) throws IOException {
+            List<Object> values = new ArrayList<>(columns.size());
+            for (String column : columns) {
+                values.add(value(row, column));
+            }
+            writeLine(values);
+        }
+
+        private void writeLine(List<?> values) throws IOException {
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(escape(values.get(i)));
+            }
+            writer.write("\r\n");
+        }
+
+        private String escape(Object value) {
+            if (value == null) {
+                return "";
+            }
+            String text = value instanceof java.util.Date ? DateUtil.formatDateTime((java.util.Date) value) : value.toString();
+            if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                return '"' + text.replace("\"", "\"\"") + '"';
+            }
+            return text;
+        }
+
+        @Override
+        protected void flush() throws IOException {
+            writer.flush();
+        }
+    }
+}
@@ -6,8 +6,6 @@ import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import cn.hutool.core.map.MapUtil;
-import cn.hutool.core.util.StrUtil;
 import com.ycbd.demo.security.UserContext;
 
 /**
@@ -37,22 +35,18 @@ public class FilterRuleService {
         }
 
         // 获取可搜索的列属性
-        List<Map<String, Object>> columns = metaService.getColumnAttrs(table);
-        if (columns == null || columns.isEmpty()) {
+        List<TableMetadata.Column> columns = metaService.getTableMetadata(table).getColumns();
+        if (columns.isEmpty()) {
             return;
         }
 
-        for (Map<String, Object> column : columns) {
+        for (TableMetadata.Column column : columns) {
             // 只处理search_flag为1的列
-            Integer searchFlag = MapUtil.getInt(column, "search_flag", 0);
-            if (searchFlag != 1) {
+            if (!column.isSearchFlag()) {
                 continue;
             }
 
-            String columnName = MapUtil.getStr(column, "column_name");
-            if (StrUtil.isBlank(columnName)) {
-                continue;
-            }
+            String columnName = column.getName();
 
             // 若调用方已显式传入该列，则不覆盖
             if (currentParams.containsKey(columnName)) {
@@ -62,11 +56,8 @@ public class FilterRuleService {
             // 尝试从用户上下文中获取同名字段
             Object userValue = userInfo.get(columnName);
             if (userValue != null) {
-                // 获取查询类型，默认为eq
-                String queryType = MapUtil.getStr(column, "query_type", "eq");
-
-                // 按 query_type 追加后缀，供 BaseService buildWhereClause 识别
-                switch (queryType.toLowerCase()) {
+                // 按 query_type 追加后缀，供 BaseService compileWhere 识别
+                switch (column.getQueryType()) {
                     case "like":
                         currentParams.put(columnName + "_like", userValue);
                         break;
@@ -1,7 +1,12 @@
 package com.ycbd.demo.service;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,8 +15,17 @@ import org.springframework.stereotype.Service;
 
 import com.ycbd.demo.config.AppProperties;
 
+import cn.hutool.core.convert.Convert;
+import cn.hutool.crypto.digest.DigestUtil;
 import cn.hutool.jwt.JWT;
 
+/**
+ * JWT 令牌的生成与验证。
+ *
+ * 验证通过的令牌按其 SHA-256 摘要缓存过滤后的用户信息，直到令牌过期（exp），重复请求只需计算摘要并查表，
+ * 不再解析令牌、重新计算 HMAC 和解码载荷。缓存条目数上限为 app.jwt.verified-cache-size，
+ * 条目记录过滤时的 Token 字段配置版本，配置刷新（版本递增）后旧条目自动失效；注销的令牌记入吊销表直到过期（仅当前实例内有效）。
+ */
 @Service
 public class JwtService {
 
@@ -23,6 +37,15 @@ public class JwtService {
     @Autowired
     private TokenFieldConfigService tokenFieldConfigService;
 
+    /** 令牌摘要 -> 已验证的用户信息 */
+    private final Map<String, VerifiedToken> verified = new ConcurrentHashMap<>();
+    /** 已吊销的令牌摘要 -> 令牌过期时间（毫秒），过期后移除 */
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
     /**
      * 生成JWT令牌
      *
@@ -36,7 +59,7 @@ public class JwtService {
         java.util.Date expireTime = new java.util.Date(expireMillis);
 
         Map<String, Boolean> enabledFieldMap = tokenFieldConfigService.getEnabledTokenFields();
-        logger.info("启用的Token字段配置: {}", enabledFieldMap);
+        logger.debug("启用的Token字段配置: {}", enabledFieldMap);
 
         Map<String, Object> payload = new HashMap<>();
         for (String tokenField : enabledFieldMap.keySet()) {
@@ -59,8 +82,7 @@ public class JwtService {
             payload.put("username", userData.get("username"));
         }
 
-        logger.info("生成Token，原始用户数据: {}", userData);
-        logger.info("生成Token，包含字段: {}", payload);
+        logger.debug("生成Token，包含字段: {}", payload.keySet());
 
         return JWT.create()
                 .addPayloads(payload)
@@ -71,29 +93,169 @@ public class JwtService {
     }
 
     /**
-     * 验证并解码JWT令牌
+     * 验证令牌并返回按 Token 字段配置过滤后的用户信息（userId、username 及已启用的字段），优先使用缓存
      *
      * @param token JWT令牌字符串
-     * @return 解码后的JWT对象，验证失败时返回null
+     * @return 用户信息副本，签名无效、已过期或已吊销时返回null
+     */
+    public Map<String, Object> authenticate(String token) {
+        String digest = DigestUtil.sha256Hex(token);
+        long now = System.currentTimeMillis();
+        if (!revoked.isEmpty() && revoked.containsKey(digest)) {
+            logger.debug("Token已吊销");
+            return null;
+        }
+        // 先读取配置版本再读取字段配置：刷新期间读到的旧配置只会记在旧版本下，随后即被判定失效
+        long configVersion = tokenFieldConfigService.getConfigVersion();
+        int maxSize = appProperties.getJwt().getVerifiedCacheSize();
+        if (maxSize > 0) {
+            VerifiedToken cached = verified.get(digest);
+            if (cached != null) {
+                if (cached.expiresAt > now && cached.configVersion == configVersion) {
+                    hits.incrementAndGet();
+                    return new HashMap<>(cached.user);
+                }
+                verified.remove(digest, cached);
+            }
+        }
+        misses.incrementAndGet();
+
+        JWT jwt = verify(token, now);
+        if (jwt == null) {
+            return null;
+        }
+        Map<String, Object> user = filterUser(jwt.getPayloads(), tokenFieldConfigService.getEnabledTokenFields());
+        Long expiresAt = expiresAt(jwt);
+        if (maxSize > 0 && expiresAt != null) {
+            if (verified.size() >= maxSize) {
+                evict(now, maxSize);
+            }
+            verified.put(digest, new VerifiedToken(user, expiresAt, configVersion));
+        }
+        return new HashMap<>(user);
+    }
+
+    /**
+     * 吊销令牌：移出缓存，并在令牌过期前拒绝其后的验证
+     */
+    public void revoke(String token) {
+        String digest = DigestUtil.sha256Hex(token);
+        long now = System.currentTimeMillis();
+        VerifiedToken cached = verified.remove(digest);
+        Long expiresAt = cached != null ? Long.valueOf(cached.expiresAt) : null;
+        if (expiresAt == null) {
+            try {
+                expiresAt = expiresAt(JWT.of(token));
+            } catch (Exception e) {
+                logger.debug("解析待吊销Token失败: {}", e.getMessage());
+            }
+        }
+        if (expiresAt == null) {
+            expiresAt = now + appProperties.getJwt().getExpirationMinutes() * 60L * 1000L;
+        }
+        revoked.values().removeIf(exp -> exp <= now);
+        revoked.put(digest, expiresAt);
+    }
+
+    /**
+     * 已验证 Token 缓存统计
+     */
+    public Map<String, Object> getCacheStats() {
+        long h = hits.get();
+        long m = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", verified.size());
+        stats.put("maxSize", appProperties.getJwt().getVerifiedCacheSize());
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("evictions", evictions.get());
+        stats.put("revoked", revoked.size());
+        stats.put("hitRate", h + m == 0 ? 0D : (double) h / (h + m));
+        return stats;
+    }
+
+    /**
+     * 验证并解码JWT令牌（不使用缓存）
+     *
+     * @param token JWT令牌字符串
+     * @return 解码后的载荷，签名无效或已过期时返回null
      */
     public Map<String, Object> verifyAndDecode(String token) {
-        try {
-            logger.info("开始验证Token: {}", token.substring(0, Math.min(20, token.length())) + "...");
-            cn.hutool.jwt.JWT jwt = cn.hutool.jwt.JWT.of(token);
-            boolean verified = jwt.setKey(appProperties.getJwt().getSecret().getBytes(java.nio.charset.StandardCharsets.UTF_8)).verify();
-            logger.info("Token验证结果: {}", verified);
+        JWT jwt = verify(token, System.currentTimeMillis());
+        return jwt != null ? jwt.getPayloads() : null;
+    }
+
+    // -------------------- 内部实现 ---------------------
 
-            if (!verified) {
-                logger.warn("Token签名验证失败");
+    private JWT verify(String token, long now) {
+        try {
+            JWT jwt = JWT.of(token);
+            if (!jwt.setKey(appProperties.getJwt().getSecret().getBytes(StandardCharsets.UTF_8)).verify()) {
+                logger.debug("Token签名验证失败");
                 return null;
             }
-
-            Map<String, Object> payload = jwt.getPayloads();
-            logger.info("Token解析成功，包含字段: {}", payload.keySet());
-            return payload;
+            Long expiresAt = expiresAt(jwt);
+            if (expiresAt != null && expiresAt <= now) {
+                logger.debug("Token已过期");
+                return null;
+            }
+            return jwt;
         } catch (Exception e) {
-            logger.warn("Token验证失败: {}", e.getMessage());
+            logger.debug("Token验证失败: {}", e.getMessage());
             return null;
         }
     }
+
+    /**
+     * 令牌过期时间（毫秒），未设置 exp 时返回null
+     */
+    private Long expiresAt(JWT jwt) {
+        Long exp = Convert.toLong(jwt.getPayload(JWT.EXPIRES_AT), null);
+        return exp != null ? exp * 1000L : null;
+    }
+
+    /**
+     * 只保留 userId、username 及已启用的 Token 字段
+     */
+    private Map<String, Object> filterUser(Map<String, Object> payload, Map<String, Boolean> enabledFields) {
+        Map<String, Object> user = new HashMap<>();
+        for (Map.Entry<String, Object> entry : payload.entrySet()) {
+            String fieldName = entry.getKey();
+            if ("userId".equals(fieldName) || "username".equals(fieldName)
+                    || Boolean.TRUE.equals(enabledFields.get(fieldName))) {
+                user.put(fieldName, entry.getValue());
+            }
+        }
+        return user;
+    }
+
+    /**
+     * 缓存已满时先清理过期条目，仍然已满则淘汰任意一项
+     */
+    private void evict(long now, int maxSize) {
+        verified.values().removeIf(entry -> entry.expiresAt <= now);
+        Iterator<String> it = verified.keySet().iterator();
+        while (verified.size() >= maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * 一个已验证令牌的过滤后用户信息，创建后不再修改
+     */
+    private static final class VerifiedToken {
+
+        private final Map<String, Object> user;
+        private final long expiresAt;
+        /** 过滤时的 Token 字段配置版本 */
+        private final long configVersion;
+
+        private VerifiedToken(Map<String, Object> user, long expiresAt, long configVersion) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+            this.configVersion = configVersion;
+        }
+    }
 }
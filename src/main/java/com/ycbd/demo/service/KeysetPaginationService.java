@@ -0,0 +1,288 @@
+package com.ycbd.demo.service;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.ycbd.demo.utils.SqlWhereBuilder;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.map.MapUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+
+/**
+ * 键集（seek）分页服务。
+ *
+ * 与 LIMIT/OFFSET 不同，下一页通过上一页最后一行的排序键 + 主键定位，
+ * 数据库可直接沿索引定位起点，深分页的耗时不随页数增长。
+ *
+ * 游标是对客户端不透明的 Base64 字符串，内容为排序签名与最后一行各排序键的取值（带类型），
+ * 排序条件变化后旧游标将被拒绝。过滤条件与普通列表查询一致，由 SqlWhereBuilder 编译。
+ */
+@Service
+public class KeysetPaginationService {
+
+    /** 排序列名仅允许字母、数字、下划线及表别名中的点 */
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z0-9_.]+");
+
+    @Autowired
+    private BaseService baseService;
+
+    @Autowired
+    private MetaService metaService;
+
+    /**
+     * 查询一页数据
+     *
+     * @param table 表名
+     * @param queryParams 查询条件
+     * @param sortByAndType 排序，如 "create_time desc"；为空时按主键升序
+     * @param pageSize 每页条数
+     * @param cursor 上一页返回的 nextCursor，首页传空
+     * @param requestedColumns 请求的投影字段，为空时使用元数据中的列表字段
+     * @return items / nextCursor / hasMore；首页额外返回 total
+     */
+    public Map<String, Object> page(String table, Map<String, Object> queryParams, String sortByAndType, int pageSize,
+            String cursor, String requestedColumns) {
+        if (pageSize <= 0) {
+            pageSize = 10;
+        }
+        String primaryKey = metaService.getTableMetadata(table).getPrimaryKey();
+        List<SortKey> sortKeys = parseSort(table, sortByAndType, primaryKey);
+        String signature = signature(table, sortKeys);
+
+        // 与普通列表查询相同的过滤语义
+        SqlWhereBuilder.Compiled filter = baseService.compileFilteredWhere(table, queryParams);
+
+        SqlWhereBuilder.Compiled where = filter;
+        boolean firstPage = StrUtil.isBlank(cursor);
+        if (!firstPage) {
+            List<Object> values = decodeCursor(cursor, signature, sortKeys.size());
+            List<String> columns = new ArrayList<>(sortKeys.size());
+            List<Boolean> descending = new ArrayList<>(sortKeys.size());
+            for (SortKey key : sortKeys) {
+                columns.add(key.qualified);
+                descending.add(key.desc);
+            }
+            where = filter.and(SqlWhereBuilder.seek(columns, descending, values));
+        }
+
+        // 投影字段须包含排序键，用于生成下一页游标
+        List<String> sortFields = new ArrayList<>(sortKeys.size());
+        for (SortKey key : sortKeys) {
+            sortFields.add(key.field);
+        }
+        String columns = baseService.buildProjection(table, requestedColumns, sortFields);
+
+        // 多取一行用于判断是否还有下一页
+        List<Map<String, Object>> rows = baseService.queryCompiled(table, columns, "", where, null,
+                orderBy(sortKeys), pageSize + 1, 0);
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = new ArrayList<>(rows.subList(0, pageSize));
+        }
+
+        Map<String, Object> data = MapUtil.newHashMap();
+        data.put("items", rows);
+        data.put("hasMore", hasMore);
+        data.put("nextCursor", hasMore ? encodeCursor(signature, sortKeys, rows.get(rows.size() - 1)) : null);
+        if (firstPage) {
+            data.put("total", baseService.countCompiled(table, "", filter));
+        }
+        return data;
+    }
+
+    // -------------------- 内部实现 ---------------------
+
+    /**
+     * 解析排序条件，末尾补充主键以保证排序唯一
+     */
+    private List<SortKey> parseSort(String table, String sortByAndType, String primaryKey) {
+        TableMetadata metadata = metaService.getTableMetadata(table);
+        List<SortKey> keys = new ArrayList<>();
+        boolean hasPrimaryKey = false;
+        if (StrUtil.isNotBlank(sortByAndType)) {
+            for (String term : sortByAndType.split(",")) {
+                String[] parts = term.trim().split("\\s+");
+                if (parts.length == 0 || parts[0].isEmpty()) {
+                    continue;
+                }
+                if (parts.length > 2 || !IDENTIFIER.matcher(parts[0]).matches()) {
+                    throw new IllegalArgumentException("不支持的排序条件: " + term.trim());
+                }
+                boolean desc = false;
+                if (parts.length == 2) {
+                    if ("desc".equalsIgnoreCase(parts[1])) {
+                        desc = true;
+                    } else if (!"asc".equalsIgnoreCase(parts[1])) {
+                        throw new IllegalArgumentException("不支持的排序方向: " + parts[1]);
+                    }
+                }
+                // 键集查询不带 JOIN，只能按本表已配置的字段排序
+                String column = parts[0].toLowerCase();
+                int dot = column.lastIndexOf('.');
+                if (dot >= 0 && !column.substring(0, dot).equalsIgnoreCase(table)) {
+                    throw new IllegalArgumentException("不支持的排序字段: " + parts[0]);
+                }
+                String field = column.substring(dot + 1);
+                if (!field.equals(primaryKey) && !metadata.hasColumn(field)) {
+                    throw new IllegalArgumentException("不支持的排序字段: " + parts[0]);
+                }
+                SortKey key = new SortKey(table, field, desc);
+                hasPrimaryKey |= key.field.equals(primaryKey);
+                keys.add(key);
+            }
+        }
+        if (!hasPrimaryKey) {
+            boolean desc = !keys.isEmpty() && keys.get(keys.size() - 1).desc;
+            keys.add(new SortKey(table, primaryKey, desc));
+        }
+        return keys;
+    }
+
+    private String orderBy(List<SortKey> sortKeys) {
+        StringBuilder sb = new StringBuilder();
+        for (SortKey key : sortKeys) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(key.qualified).append(key.desc ? " DESC" : " ASC");
+        }
+        return sb.toString();
+    }
+
+    private String signature(String table, List<SortKey> sortKeys) {
+        return table + ":" + orderBy(sortKeys);
+    }
+
+    private String encodeCursor(String signature, List<SortKey> sortKeys, Map<String, Object> lastRow) {
+        JSONArray values = new JSONArray();
+        for (SortKey key : sortKeys) {
+            values.add(encodeValue(lastRow.get(key.field)));
+        }
+        JSONObject token = new JSONObject();
+        token.set("s", signature);
+        token.set("v", values);
+        return Base64.encodeUrlSafe(token.toString(), StandardCharsets.UTF_8);
+    }
+
+    private List<Object> decodeCursor(String cursor, String signature, int size) {
+        JSONObject token;
+        try {
+            token = JSONUtil.parseObj(Base64.decodeStr(cursor, StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("无效的cursor");
+        }
+        if (!signature.equals(token.getStr("s"))) {
+            throw new IllegalArgumentException("cursor与当前查询的排序条件不匹配");
+        }
+        JSONArray values = token.getJSONArray("v");
+        if (values == null || values.size() != size) {
+            throw new IllegalArgumentException("无效的cursor");
+        }
+        List<Object> decoded = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            decoded.add(decodeValue(values.getJSONArray(i)));
+        }
+        return decoded;
+    }
+
+    /**
+     * 编码排序键取值为 [类型, 字符串值]，保证解码后以原类型绑定
+     */
+    private JSONArray encodeValue(Object value) {
+        JSONArray pair = new JSONArray();
+        String type;
+        if (value == null) {
+            type = "null";
+        } else if (value instanceof Timestamp) {
+            type = "ts";
+        } else if (value instanceof java.sql.Date) {
+            type = "d";
+        } else if (value instanceof java.util.Date) {
+            type = "ts";
+            value = new Timestamp(((java.util.Date) value).getTime());
+        } else if (value instanceof LocalDateTime) {
+            type = "ldt";
+        } else if (value instanceof LocalDate) {
+            type = "ld";
+        } else if (value instanceof OffsetDateTime) {
+            type = "odt";
+        } else if (value instanceof Number) {
+            type = "n";
+        } else if (value instanceof Boolean) {
+            type = "b";
+        } else {
+            type = "s";
+        }
+        pair.add(type);
+        pair.add(value == null ? "" : value.toString());
+        return pair;
+    }
+
+    private Object decodeValue(JSONArray pair) {
+        if (pair == null || pair.size() != 2) {
+            throw new IllegalArgumentException("无效的cursor");
+        }
+        String type = pair.getStr(0);
+        String value = pair.getStr(1);
+        try {
+            switch (type) {
+                case "null":
+                    return null;
+                case "ts":
+                    return Timestamp.valueOf(value);
+                case "d":
+                    return java.sql.Date.valueOf(value);
+                case "ldt":
+                    return LocalDateTime.parse(value);
+                case "ld":
+                    return LocalDate.parse(value);
+                case "odt":
+                    return OffsetDateTime.parse(value);
+                case "n":
+                    return new BigDecimal(value);
+                case "b":
+                    return Boolean.valueOf(value);
+                case "s":
+                    return value;
+                default:
+                    throw new IllegalArgumentException("无效的cursor");
+            }
+        } catch (Exception e) {
+            throw new IllegalArgumentException("无效的cursor");
+        }
+    }
+
+    /**
+     * 单个排序键
+     */
+    private static final class SortKey {
+
+        /** 结果行中的字段名（小写、不含表别名） */
+        private final String field;
+        /** SQL 中使用的列名 */
+        private final String qualified;
+        private final boolean desc;
+
+        private SortKey(String table, String column, boolean desc) {
+            int dot = column.lastIndexOf('.');
+            this.field = dot >= 0 ? column.substring(dot + 1) : column;
+            this.qualified = dot >= 0 ? column : table + "." + column;
+            this.desc = desc;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.ycbd.demo.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ycbd.demo.mapper.SystemMapper;
+import com.ycbd.demo.utils.ResultCode;
+import com.ycbd.demo.utils.SqlWhereBuilder;
+
+/**
+ * 列表查询的流式 JSON 输出。
+ *
+ * 复用 SystemMapper.getItemsDataPrepared 的动态 SQL 生成与参数绑定（BoundSql + DefaultParameterHandler），
+ * 但自行执行语句并用 JsonGenerator 从 ResultSet 逐行写出 ApiResponse 信封与数据行，
+ * 不再经过 MyBatis Map、小写 key 复制与整页 List。字段名使用元数据中预编码的 SerializedString。
+ *
+ * 输出与常规路径保持一致：字段名小写，值为 NULL 的列不输出。
+ */
+@Service
+public class ListStreamService {
+
+    private static final String STATEMENT = SystemMapper.class.getName() + ".getItemsDataPrepared";
+
+    private static final SerializedString CODE = new SerializedString("code");
+    private static final SerializedString MESSAGE = new SerializedString("message");
+    private static final SerializedString DATA = new SerializedString("data");
+    private static final SerializedString ITEMS = new SerializedString("items");
+    private static final SerializedString HAS_MORE = new SerializedString("hasMore");
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MetaService metaService;
+
+    @Autowired
+    private BaseService baseService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 写出列表响应
+     *
+     * @param table 表名
+     * @param columns 投影字段，null 表示全部
+     * @param where 编译后的 WHERE 子句
+     * @param sortByAndType 排序
+     * @param pageSize 每页条数
+     * @param offset 跳过的行数
+     * @param out 输出流
+     * @param trailer 数据行写完后调用，返回追加到 data 中的字段（如 total）
+     */
+    public void writeList(String table, String columns, SqlWhereBuilder.Compiled where, String sortByAndType,
+            int pageSize, int offset, OutputStream out, Supplier<Map<String, Object>> trailer) throws IOException {
+        Configuration configuration = sqlSessionFactory.getConfiguration();
+        MappedStatement ms = configuration.getMappedStatement(STATEMENT);
+
+        MapperMethod.ParamMap<Object> param = new MapperMethod.ParamMap<>();
+        // 按时间分桶存储的表从各分支带 WHERE、排序与行数上限的合并子查询读取
+        param.put("table", baseService.sourceOf(table, where, sortByAndType, offset + pageSize + 1));
+        param.put("columns", columns);
+        param.put("joinString", null);
+        param.put("whereSql", where.toMyBatisSql("whereParams"));
+        param.put("whereParams", where.getParams());
+        param.put("groupByString", null);
+        param.put("sortByAndType", sortByAndType);
+        // 多取一行用于判断是否还有下一页
+        param.put("pageSize", pageSize + 1);
+        param.put("pageIndex", offset);
+        BoundSql boundSql = ms.getBoundSql(param);
+
+        TableMetadata metadata = metaService.getTableMetadata(table);
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try (PreparedStatement ps = connection.prepareStatement(boundSql.getSql(),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            Integer timeout = ms.getTimeout() != null ? ms.getTimeout() : configuration.getDefaultStatementTimeout();
+            if (timeout != null) {
+                ps.setQueryTimeout(timeout);
+            }
+            new DefaultParameterHandler(ms, param, boundSql).setParameters(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                write(rs, metadata, pageSize, out, trailer);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("查询失败: " + e.getMessage(), e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private void write(ResultSet rs, TableMetadata metadata, int pageSize, OutputStream out,
+            Supplier<Map<String, Object>> trailer) throws SQLException, IOException {
+        ResultSetMetaData rsmd = rs.getMetaData();
+        int columnCount = rsmd.getColumnCount();
+        SerializedString[] names = new SerializedString[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            String label = rsmd.getColumnLabel(i + 1).toLowerCase();
+            TableMetadata.Column column = metadata.getColumn(label);
+            names[i] = column != null ? column.getJsonName() : new SerializedString(label);
+        }
+
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.writeStartObject();
+            gen.writeFieldName(CODE);
+            gen.writeNumber(ResultCode.SUCCESS.getCode());
+            gen.writeFieldName(MESSAGE);
+            gen.writeString(ResultCode.SUCCESS.getMessage());
+            gen.writeFieldName(DATA);
+            gen.writeStartObject();
+
+            gen.writeFieldName(ITEMS);
+            gen.writeStartArray();
+            int count = 0;
+            boolean hasMore = false;
+            while (rs.next()) {
+                if (count == pageSize) {
+                    hasMore = true;
+                    break;
+                }
+                gen.writeStartObject();
+                for (int i = 0; i < columnCount; i++) {
+                    Object value = rs.getObject(i + 1);
+                    if (value == null) {
+                        continue;
+                    }
+                    gen.writeFieldName(names[i]);
+                    writeValue(gen, value);
+                }
+                gen.writeEndObject();
+                count++;
+            }
+            gen.writeEndArray();
+            gen.writeFieldName(HAS_MORE);
+            gen.writeBoolean(hasMore);
+
+            for (Map.Entry<String, Object> entry : trailer.get().entrySet()) {
+                gen.writeFieldName(entry.getKey());
+                gen.writeObject(entry.getValue());
+            }
+            gen.writeEndObject();
+            gen.writeEndObject();
+        }
+    }
+
+    private void writeValue(JsonGenerator gen, Object value) throws SQLException, IOException {
+        if (value instanceof String) {
+            gen.writeString((String) value);
+        } else if (value instanceof Integer) {
+            gen.writeNumber((Integer) value);
+        } else if (value instanceof Long) {
+            gen.writeNumber((Long) value);
+        } else if (value instanceof Boolean) {
+            gen.writeBoolean((Boolean) value);
+        } else if (value instanceof Clob) {
+            Clob clob = (Clob) value;
+            gen.writeString(clob.getSubString(1, (int) clob.length()));
+        } else if (value instanceof Blob) {
+            Blob blob = (Blob) value;
+            gen.writeBinary(blob.getBytes(1, (int) blob.length()));
+        } else {
+            // 日期等类型按全局 ObjectMapper 规则序列化
+            gen.writeObject(value);
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package com.ycbd.demo.service;
+
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.ycbd.demo.config.AppProperties;
+import com.ycbd.demo.mapper.SystemMapper;
+
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.map.MapUtil;
+import cn.hutool.core.util.StrUtil;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 操作日志的按时间分桶存储（app.log-storage.*）。
+ *
+ * 写入：按 created_at 落到按天（system_log_yyyyMMdd）或按周（system_log_wyyyyMMdd，周一开始）的分桶表，
+ * 分桶表与 system_log 结构相同并带 created_at、request_uri 索引，首次写入或维护任务预建时创建。
+ * 读取：targetTable=system_log 的查询路由到与时间范围相交的分桶表及 system_log 本身，
+ * 时间范围取自 created_at / created_at_range 查询参数，未指定时为全部分桶。列表查询的排序与分桶顺序一致时按新到旧逐个分桶读取直到取满一页，
+ * 否则把 WHERE、ORDER BY、LIMIT 下推到每个 UNION ALL 分支；计数按分桶分别统计后相加。
+ * 维护：后台线程定时预建下一个分桶、把 system_log_aggregate 中已结束的小时汇总到 system_log_hourly，
+ * 并整表删除超出保留个数的分桶（DROP TABLE，代价与数据量无关，不再 DELETE 扫描）。
+ *
+ * ID：每个分桶的自增 ID 从 分桶起始日期的 epochDay × {@value #ID_BLOCK} 开始，各分桶、以及 system_log 本身（ID 小于
+ * {@value #ID_BLOCK}）互不重叠，合并查询时 ID 全局唯一，且可以由 ID 直接定位所在分桶；按 ID 的查询、修改与删除只访问该分桶。
+ */
+@Service
+public class LogStorageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogStorageService.class);
+
+    public static final String TABLE = "system_log";
+
+    private static final String ROLLUP_TABLE = "system_log_hourly";
+
+    /** 分桶表名：system_log_yyyyMMdd（按天）或 system_log_wyyyyMMdd（按周） */
+    private static final Pattern BUCKET_NAME = Pattern.compile("system_log_(w?)(\\d{8})");
+
+    /** 首个排序项为 created_at 或 id 倒序（分桶的 ID 段随日期递增） */
+    private static final Pattern NEWEST_FIRST = Pattern.compile("\\s*(`?system_log`?\\.)?`?(created_at|id)`?\\s+desc\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final DateTimeFormatter BUCKET_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    /** 每个分桶可用的 ID 个数，分桶的首个 ID 为 起始日期 epochDay × ID_BLOCK */
+    static final long ID_BLOCK = 10_000_000_000L;
+
+    /** 每次维护最多汇总的小时数，积压较多时分多次完成 */
+    private static final int MAX_ROLLUP_HOURS = 24 * 7;
+
+    @Autowired
+    private AppProperties appProperties;
+
+    @Autowired
+    private SystemMapper systemMapper;
+
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    /** 已存在的分桶表：表名 -> 分桶 */
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rolledUpHours = new AtomicLong();
+
+    /** 下一个待汇总的小时，null 表示尚未从数据库读取 */
+    private LocalDateTime nextRollupHour;
+
+    private volatile boolean running;
+    private Thread maintainer;
+
+    @PostConstruct
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        loadBuckets();
+        running = true;
+        maintainer = new Thread(this::run, "log-storage");
+        maintainer.setDaemon(true);
+        maintainer.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (maintainer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(maintainer);
+        try {
+            maintainer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isEnabled() {
+        return appProperties.getLogStorage().isEnabled();
+    }
+
+    /**
+     * 表是否按时间分桶存储
+     */
+    public boolean isPartitioned(String table) {
+        return isEnabled() && TABLE.equals(table);
+    }
+
+    /**
+     * 时间点所在的分桶表，不存在时创建
+     */
+    public String bucketFor(Timestamp time) {
+        LocalDate date = time.toLocalDateTime().toLocalDate();
+        boolean weekly = "weekly".equalsIgnoreCase(appProperties.getLogStorage().getBucket());
+        LocalDate start = weekly ? date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)) : date;
+        String name = TABLE + "_" + (weekly ? "w" : "") + start.format(BUCKET_DATE);
+        if (!buckets.containsKey(name)) {
+            createBucket(name, new Bucket(name, start, weekly ? start.plusWeeks(1) : start.plusDays(1)));
+        }
+        return name;
+    }
+
+    /**
+     * 新记录写入的分桶：按记录的 created_at（日期时间或字符串），未指定或无法解析时按当前时间
+     */
+    public String bucketFor(Map<String, Object> row) {
+        Object createdAt = row.get("created_at");
+        if (createdAt instanceof Date) {
+            return bucketFor(new Timestamp(((Date) createdAt).getTime()));
+        }
+        if (createdAt instanceof LocalDateTime) {
+            return bucketFor(Timestamp.valueOf((LocalDateTime) createdAt));
+        }
+        // 溢写回放的行中日期时间已转换为字符串
+        LocalDateTime parsed = createdAt instanceof String ? parseTime((String) createdAt) : null;
+        return bucketFor(parsed != null ? Timestamp.valueOf(parsed) : new Timestamp(System.currentTimeMillis()));
+    }
+
+    /**
+     * ID 所在的物理表：小于 {@value #ID_BLOCK} 的在 system_log 本身，否则按 ID 段定位分桶；分桶已删除或 ID 无法解析时返回 null
+     */
+    public String tableForId(Object id) {
+        long value;
+        try {
+            value = Long.parseLong(String.valueOf(id).trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (value < ID_BLOCK) {
+            return TABLE;
+        }
+        long epochDay = value / ID_BLOCK;
+        for (Bucket bucket : buckets.values()) {
+            if (bucket.start.toEpochDay() == epochDay) {
+                return bucket.name;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 全部物理表：分桶表按新到旧排列，最后是 system_log 本身
+     */
+    public List<String> allTables() {
+        List<String> tables = resolveTables(null);
+        return tables != null ? tables : Collections.singletonList(TABLE);
+    }
+
+    /**
+     * 解析查询路由到的物理表：与查询时间范围相交的分桶表按新到旧排列，最后是 system_log 本身（启用分桶前的历史数据）。
+     * 按 id 等值查询时只路由到该 ID 所在的表。没有相交的分桶时返回 null（直接查询 system_log）
+     */
+    public List<String> resolveTables(Map<String, Object> params) {
+        String id = params != null ? MapUtil.getStr(params, "id") : null;
+        if (StrUtil.isNotBlank(id) && !id.contains(",")) {
+            String table = tableForId(id);
+            return table == null || TABLE.equals(table) ? null : Collections.singletonList(table);
+        }
+        LocalDateTime[] range = timeRange(params);
+        List<Bucket> matched = new ArrayList<>();
+        for (Bucket bucket : buckets.values()) {
+            if ((range[0] == null || bucket.end.atStartOfDay().isAfter(range[0]))
+                    && (range[1] == null || !bucket.start.atStartOfDay().isAfter(range[1]))) {
+                matched.add(bucket);
+            }
+        }
+        if (matched.isEmpty()) {
+            return null;
+        }
+        matched.sort(Comparator.comparing((Bucket b) -> b.start).reversed());
+        List<String> tables = new ArrayList<>(matched.size() + 1);
+        for (Bucket bucket : matched) {
+            tables.add(bucket.name);
+        }
+        tables.add(TABLE);
+        return tables;
+    }
+
+    /**
+     * 单个物理表作为 FROM 数据源：分桶表以 system_log 为别名，投影、排序及 WHERE 子句中的 system_log.xxx 引用保持有效
+     */
+    public static String aliased(String table) {
+        return TABLE.equals(table) ? TABLE : table + " " + TABLE;
+    }
+
+    /**
+     * 排序是否与分桶的新到旧顺序一致（未指定排序，或首个排序项为 created_at / id 倒序），
+     * 一致时可以逐个分桶读取直到取满一页，无需合并全部分桶
+     */
+    public static boolean followsBucketOrder(String sortByAndType) {
+        return StrUtil.isBlank(sortByAndType) || NEWEST_FIRST.matcher(sortByAndType).lookingAt();
+    }
+
+    /**
+     * 多个物理表合并为同名子查询：WHERE、ORDER BY 与 LIMIT 下推到每个 UNION ALL 分支，
+     * 各分支可以使用自身索引并只返回前 limit 行，外层再做最终排序与分页
+     *
+     * @param whereSql 下推的 WHERE 子句（MyBatis 形式），null 表示不过滤；不能引用 JOIN 的其他表
+     * @param sortByAndType 下推的排序，null 表示不排序
+     * @param limit 每个分支最多返回的行数，0 表示不限
+     */
+    public String unionSource(List<String> tables, String whereSql, String sortByAndType, int limit) {
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < tables.size(); i++) {
+            if (i > 0) {
+                sb.append(" UNION ALL ");
+            }
+            sb.append("SELECT * FROM (SELECT * FROM ").append(aliased(tables.get(i)));
+            if (StrUtil.isNotBlank(whereSql)) {
+                sb.append(" WHERE ").append(whereSql);
+            }
+            if (StrUtil.isNotBlank(sortByAndType)) {
+                sb.append(" ORDER BY ").append(sortByAndType);
+            }
+            if (limit > 0) {
+                sb.append(" LIMIT ").append(limit);
+            }
+            sb.append(") p").append(i);
+        }
+        return sb.append(") ").append(TABLE).toString();
+    }
+
+    /**
+     * 运行统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("bucket", appProperties.getLogStorage().getBucket());
+        stats.put("buckets", buckets.size());
+        buckets.values().stream().min(Comparator.comparing((Bucket b) -> b.start))
+                .ifPresent(b -> stats.put("oldest", b.name));
+        buckets.values().stream().max(Comparator.comparing((Bucket b) -> b.start))
+                .ifPresent(b -> stats.put("newest", b.name));
+        stats.put("created", created.get());
+        stats.put("dropped", dropped.get());
+        stats.put("rolledUpHours", rolledUpHours.get());
+        return stats;
+    }
+
+    // -------------------- 内部实现 ---------------------
+
+    private void run() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1000, appProperties.getLogStorage().getMaintenanceIntervalMs()));
+        while (running) {
+            maintain();
+            LockSupport.parkNanos(this, intervalNanos);
+        }
+    }
+
+    /**
+     * 预建当前及下一个分桶、小时汇总、删除过期分桶；各步骤独立，失败只记录日志
+     */
+    private void maintain() {
+        try {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            bucketFor(now);
+            bucketFor(Timestamp.valueOf(now.toLocalDateTime().plusDays(
+                    "weekly".equalsIgnoreCase(appProperties.getLogStorage().getBucket()) ? 7 : 1)));
+        } catch (Exception e) {
+            logger.error("预建操作日志分桶失败: {}", e.getMessage());
+        }
+        try {
+            rollup();
+        } catch (Exception e) {
+            logger.error("汇总操作日志小时统计失败: {}", e.getMessage());
+        }
+        try {
+            dropExpired();
+        } catch (Exception e) {
+            logger.error("清理过期操作日志分桶失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 启动时加载数据库中已有的分桶表
+     */
+    private void loadBuckets() {
+        try {
+            for (String name : systemMapper.listTableNames(TABLE + "_%")) {
+                Bucket bucket = parse(name);
+                if (bucket != null) {
+                    buckets.put(bucket.name, bucket);
+                }
+            }
+            logger.debug("已加载 {} 个操作日志分桶", buckets.size());
+        } catch (Exception e) {
+            logger.warn("读取已有操作日志分桶失败，仅使用之后创建的分桶: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void createBucket(String name, Bucket bucket) {
+        if (buckets.containsKey(name)) {
+            return;
+        }
+        systemMapper.executeUpdate("CREATE TABLE IF NOT EXISTS " + name + " ("
+                + "id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "user_id INT, "
+                + "username VARCHAR(50), "
+                + "method VARCHAR(10), "
+                + "request_uri VARCHAR(255), "
+                + "params TEXT, "
+                + "client_ip VARCHAR(50), "
+                + "status INT, "
+                + "response_body TEXT, "
+                + "duration_ms BIGINT, "
+                + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+                + "KEY idx_" + name + "_created (created_at), "
+                + "KEY idx_" + name + "_uri (request_uri, created_at)) "
+                + "AUTO_INCREMENT = " + bucket.start.toEpochDay() * ID_BLOCK);
+        buckets.put(name, bucket);
+        created.incrementAndGet();
+        queryResultCache.onTableWritten(TABLE);
+        logger.info("已创建操作日志分桶: {}", name);
+    }
+
+    /**
+     * 删除结束时间早于保留范围的分桶
+     */
+    private void dropExpired() {
+        AppProperties.LogStorage config = appProperties.getLogStorage();
+        if (config.getRetentionBuckets() <= 0) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        boolean weekly = "weekly".equalsIgnoreCase(config.getBucket());
+        LocalDate cutoff = weekly
+                ? today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).minusWeeks(config.getRetentionBuckets() - 1)
+                : today.minusDays(config.getRetentionBuckets() - 1);
+        for (Bucket bucket : new ArrayList<>(buckets.values())) {
+            if (bucket.end.isAfter(cutoff)) {
+                continue;
+            }
+            // 先移出路由再删表，新查询不会再引用该分桶
+            buckets.remove(bucket.name);
+            queryResultCache.onTableWritten(TABLE);
+            systemMapper.executeUpdate("DROP TABLE IF EXISTS " + bucket.name);
+            dropped.incrementAndGet();
+            logger.info("已删除过期操作日志分桶: {}", bucket.name);
+        }
+    }
+
+    /**
+     * 把 system_log_aggregate 中已结束的小时按方法、URI 汇总到 system_log_hourly。
+     * 小时结束后再等待一个汇总写入周期（app.logging.aggregate-flush-interval-ms），保证该小时的窗口都已落库；
+     * 没有数据的小时直接跳到下一个有窗口的小时
+     */
+    private void rollup() {
+        if (nextRollupHour == null) {
+            Timestamp last = systemMapper.getLogRollupWatermark();
+            nextRollupHour = last != null ? last.toLocalDateTime().plusHours(1) : LocalDateTime.of(1970, 1, 1, 0, 0);
+        }
+        LocalDateTime ready = LocalDateTime.now().minus(appProperties.getLogging().getAggregateFlushIntervalMs(), ChronoUnit.MILLIS);
+        int hours = 0;
+        while (hours < MAX_ROLLUP_HOURS) {
+            Timestamp next = systemMapper.getNextAggregateWindow(Timestamp.valueOf(nextRollupHour));
+            if (next == null) {
+                break;
+            }
+            LocalDateTime hourStart = next.toLocalDateTime().truncatedTo(ChronoUnit.HOURS);
+            LocalDateTime hourEnd = hourStart.plusHours(1);
+            if (hourEnd.isAfter(ready)) {
+                break;
+            }
+            systemMapper.insertLogRollup(Timestamp.valueOf(hourStart), Timestamp.valueOf(hourEnd));
+            nextRollupHour = hourEnd;
+            hours++;
+        }
+        if (hours > 0) {
+            rolledUpHours.addAndGet(hours);
+            queryResultCache.onTableWritten(ROLLUP_TABLE);
+            logger.debug("已汇总操作日志 {} 个小时，下一个待汇总小时: {}", hours, nextRollupHour);
+        }
+    }
+
+    /**
+     * 从 created_at（等值）或 created_at_range / created_at_between（"开始~结束" 或 "开始至结束"）参数解析时间范围，
+     * 无法解析的一端视为不限
+     */
+    private LocalDateTime[] timeRange(Map<String, Object> params) {
+        LocalDateTime[] range = new LocalDateTime[2];
+        if (params == null) {
+            return range;
+        }
+        String exact = MapUtil.getStr(params, "created_at");
+        if (StrUtil.isNotBlank(exact) && !exact.contains(",")) {
+            range[0] = parseTime(exact);
+            range[1] = range[0];
+            return range;
+        }
+        String value = StrUtil.blankToDefault(MapUtil.getStr(params, "created_at_range"), MapUtil.getStr(params, "created_at_between"));
+        if (StrUtil.isBlank(value)) {
+            return range;
+        }
+        String[] parts = value.contains("~") ? value.split("~", 2) : value.split("至", 2);
+        if (parts.length == 2) {
+            range[0] = parseTime(parts[0]);
+            range[1] = parseTime(parts[1]);
+        }
+        return range;
+    }
+
+    private LocalDateTime parseTime(String value) {
+        if (StrUtil.isBlank(value)) {
+            return null;
+        }
+        try {
+            return new Timestamp(DateUtil.parse(value.trim()).getTime()).toLocalDateTime();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private Bucket parse(String name) {
+        Matcher matcher = BUCKET_NAME.matcher(name);
+        if (!matcher.matches()) {
+            return null;
+        }
+        try {
+            LocalDate start = LocalDate.parse(matcher.group(2), BUCKET_DATE);
+            boolean weekly = !matcher.group(1).isEmpty();
+            return new Bucket(name, start, weekly ? start.plusWeeks(1) : start.plusDays(1));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 一个分桶表及其覆盖的日期范围 [start, end)
+     */
+    private static final class Bucket {
+
+        private final String name;
+        private final LocalDate start;
+        private final LocalDate end;
+
+        private Bucket(String name, LocalDate start, LocalDate end) {
+            this.name = name;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -1,57 +1,200 @@
 package com.ycbd.demo.service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.ycbd.demo.mapper.SystemMapper;
 import com.ycbd.demo.utils.Tools;
 
+import cn.hutool.core.lang.TypeReference;
+import cn.hutool.core.map.MapUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+
 /**
  * 元数据读取服务。统一负责从 table_attribute / column_attribute 等配置表
  * 拉取并做大小写、空值处理，供其他业务层调用。
  *
+ * 每张表的元数据只编译一次为不可变的 {@link TableMetadata} 快照并缓存，
+ * 配置表被写入时整体失效、下次访问时重新编译，热路径上不再产生元数据 SQL。
+ *
  * 如需扩展更多元数据表，只在此服务增加方法即可，保证单一职责。
  */
 @Service
 public class MetaService {
 
+    private static final Logger logger = LoggerFactory.getLogger(MetaService.class);
+
+    /** 写入后需要让元数据快照失效的配置表 */
+    private static final Set<String> METADATA_TABLES = new HashSet<>(Arrays.asList(
+            "table_attribute", "column_attribute", "column_check_property", "sys_dict_item"));
+
     @Autowired
     private SystemMapper systemMapper;
 
+    /** 表名 -> 元数据快照 */
+    private final Map<String, TableMetadata> registry = new ConcurrentHashMap<>();
+
+    /** 快照版本序列 */
+    private final AtomicLong versionSeq = new AtomicLong();
+
+    /** 全局字段映射（sys_dict_item.category_code='FIELD_MAPPING'），null 表示尚未加载 */
+    private volatile Map<String, String> globalFieldMappings;
+
+    /**
+     * 获取表的元数据快照，首次访问时编译。
+     */
+    public TableMetadata getTableMetadata(String table) {
+        TableMetadata metadata = registry.get(table);
+        if (metadata != null) {
+            return metadata;
+        }
+        try {
+            return registry.computeIfAbsent(table, this::compile);
+        } catch (Exception ex) {
+            // 编译失败不缓存，返回空快照以继续流程
+            logger.warn("编译表[{}]元数据失败，返回空元数据", table, ex);
+            return TableMetadata.empty(table);
+        }
+    }
+
     /**
      * 获取表级属性（已做 key 小写化）。
      */
     public Map<String, Object> getTableAttr(String table) {
-        Map<String, Object> raw = systemMapper.getAttributeData(table);
-        return Tools.toLowerCaseKeyMap(raw);
+        return getTableMetadata(table).getTableAttr();
     }
 
     /**
      * 获取字段属性列表（全部 key 小写化，name/querytype/columntype 等列也转为小写）。
+     * 返回的列表及其中的 Map 均为只读快照。
      */
     public List<Map<String, Object>> getColumnAttrs(String table) {
+        return getTableMetadata(table).getColumnAttrs();
+    }
+
+    /**
+     * 表数据被写入后的回调。若写入的是元数据配置表，立即失效全部快照，
+     * 并在所在事务结束后再失效一次，避免并发读取在提交前把旧配置重新编译进缓存。
+     */
+    public void onTableWritten(String table) {
+        if (table == null || !METADATA_TABLES.contains(table.toLowerCase())) {
+            return;
+        }
+        invalidateAll();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidateAll();
+                }
+            });
+        }
+    }
+
+    /**
+     * 失效指定表的元数据快照
+     */
+    public void invalidate(String table) {
+        registry.remove(table);
+    }
+
+    /**
+     * 失效全部元数据快照（包括全局字段映射）
+     */
+    public void invalidateAll() {
+        globalFieldMappings = null;
+        registry.clear();
+        logger.debug("元数据快照已全部失效");
+    }
+
+    // -------------------- 内部实现 ---------------------
+
+    private TableMetadata compile(String table) {
+        Map<String, Object> tableAttr = Tools.toLowerCaseKeyMap(systemMapper.getAttributeData(table));
+
         List<Map<String, Object>> raw = systemMapper.getColumnAttributes(table, null);
-        List<Map<String, Object>> normalized = new ArrayList<>();
+        List<Map<String, Object>> normalized = new ArrayList<>(raw.size());
         for (Map<String, Object> item : raw) {
             Map<String, Object> lower = Tools.toLowerCaseKeyMap(item);
-            Object colName = lower.get("column_name");
-            if (colName != null) {
-                lower.put("column_name", colName.toString().toLowerCase());
+            // 关键字段取值也转小写，方便后续比较
+            for (String key : new String[]{"column_name", "query_type", "column_type", "is_pri"}) {
+                Object val = lower.get(key);
+                if (val != null) {
+                    lower.put(key, val.toString().toLowerCase());
+                }
             }
-            Object qType = lower.get("query_type");
-            if (qType != null) {
-                lower.put("query_type", qType.toString().toLowerCase());
+            normalized.add(lower);
+        }
+
+        Map<String, String> mappings = new HashMap<>(getGlobalFieldMappings());
+        mappings.putAll(parseTableFieldMappings(table, tableAttr));
+
+        TableMetadata metadata = new TableMetadata(table, versionSeq.incrementAndGet(), tableAttr, normalized, mappings);
+        logger.debug("编译表[{}]元数据完成，字段数: {}, 版本: {}", table, metadata.getColumns().size(), metadata.getVersion());
+        return metadata;
+    }
+
+    /**
+     * 解析 table_attribute.defin_columns 中的 field_mapping 配置
+     */
+    private Map<String, String> parseTableFieldMappings(String table, Map<String, Object> tableAttr) {
+        try {
+            String defin = MapUtil.getStr(tableAttr, "defin_columns");
+            if (StrUtil.isNotBlank(defin)) {
+                JSONObject jo = JSONUtil.parseObj(defin);
+                if (jo.containsKey("field_mapping")) {
+                    return jo.getJSONObject("field_mapping").toBean(new TypeReference<Map<String, String>>() {
+                    });
+                }
             }
-            Object cType = lower.get("column_type");
-            if (cType != null) {
-                lower.put("column_type", cType.toString().toLowerCase());
+        } catch (Exception ex) {
+            logger.warn("解析表[{}]字段映射配置失败", table, ex);
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * 加载全局字段映射（sys_dict_item.category_code='FIELD_MAPPING'）
+     */
+    private Map<String, String> getGlobalFieldMappings() {
+        Map<String, String> cached = globalFieldMappings;
+        if (cached != null) {
+            return cached;
+        }
+        Map<String, String> loaded = new HashMap<>();
+        try {
+            List<Map<String, Object>> list = systemMapper.getItemsData(
+                    "sys_dict_item", "item_key,item_value", null,
+                    "sys_dict_item.category_code = 'FIELD_MAPPING'", null, null, 1000, 0);
+            for (Map<String, Object> item : list) {
+                Map<String, Object> row = Tools.toLowerCaseKeyMap(item);
+                String key = MapUtil.getStr(row, "item_key");
+                String val = MapUtil.getStr(row, "item_value");
+                if (StrUtil.isNotBlank(key) && StrUtil.isNotBlank(val)) {
+                    loaded.putIfAbsent(key, val);
+                }
             }
-            normalized.add(lower);
+        } catch (Exception ex) {
+            logger.warn("加载全局字段映射失败", ex);
         }
-        return normalized;
+        globalFieldMappings = Collections.unmodifiableMap(loaded);
+        return globalFieldMappings;
     }
-} 
\ No newline at end of file
+}
@@ -1,36 +1,117 @@
 package com.ycbd.demo.service;
 
-import java.util.HashMap;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ycbd.demo.config.AppProperties;
+import com.ycbd.demo.utils.ApiResponse;
+import com.ycbd.demo.utils.MpscRingBuffer;
+import com.ycbd.demo.utils.ResultCode;
 import com.ycbd.demo.utils.Tools;
+import com.ycbd.demo.utils.TruncatingWriter;
 
+import cn.hutool.core.util.StrUtil;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 /**
  * 操作日志服务：根据配置将请求日志写入 system_log 表。
+ *
+ * 分级记录：失败（异常、非 2xx、业务码非 200）及耗时达到 app.logging.slow-threshold-ms 的请求总是完整记录；
+ * 其余请求按 URI 采样率（app.logging.uri-sample-rates，默认 sample-rate）抽样记录，未抽中的不做任何序列化。
+ * 所有请求都计入按 URI 的内存汇总，每 aggregate-flush-interval-ms 写入一次 system_log_aggregate。
+ *
+ * 请求线程只构造一个不可变的 {@link Event} 放入有界无锁队列（{@link MpscRingBuffer}）即返回；
+ * 后台单线程按条数（app.logging.flush-size）或时间（flush-interval-ms）批量取出，经 JDBC 批处理写入 system_log，
+ * 不再为每个请求走一遍 saveData 的校验、预处理和单行事务。队列满时按 app.logging.overflow-policy 丢弃或短暂等待。
+ * 开启 app.log-storage.enabled 时按事件时间写入对应的分桶表（见 {@link LogStorageService}）。
  */
 @Service
 public class OperationLogService {
 
-    @Value("${app.logging.save-operation-log:false}")
-    private boolean saveOperationLog;
+    private static final Logger log = LoggerFactory.getLogger(OperationLogService.class);
+
+    private static final String TABLE = "system_log";
+
+    private static final String AGGREGATE_TABLE = "system_log_aggregate";
+
+    /** URI 采样率解析缓存的最大条目数，超出后不再缓存 */
+    private static final int MAX_CACHED_RATES = 1000;
 
     @Autowired
-    private CommonService commonService;
+    private AppProperties appProperties;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    private static final Logger log = LoggerFactory.getLogger(OperationLogService.class);
+    @Autowired
+    private BaseService baseService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LogStorageService logStorageService;
+
+    private MpscRingBuffer<Event> queue;
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong sampledOut = new AtomicLong();
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    /** URI -> 采样率 */
+    private final Map<String, Double> sampleRates = new ConcurrentHashMap<>();
+    /** "方法 URI" -> 汇总统计 */
+    private final Map<String, UriStats> aggregates = new ConcurrentHashMap<>();
+    private volatile long windowStart = System.currentTimeMillis();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    @PostConstruct
+    public void start() {
+        queue = new MpscRingBuffer<>(appProperties.getLogging().getQueueCapacity());
+        running = true;
+        writer = new Thread(this::run, "operation-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!writer.isAlive()) {
+            flush();
+            flushAggregates();
+        }
+    }
 
     /**
      * 记录操作日志
@@ -43,62 +124,312 @@ public class OperationLogService {
      */
     public void log(HttpServletRequest request, Map<String, Object> userMap, HttpServletResponse response,
             long duration, Object result) {
-        if (!saveOperationLog) {
+        log(request, userMap, response, duration, result, null);
+    }
+
+    /**
+     * 记录操作日志
+     *
+     * @param error 控制器抛出的异常，可为null
+     */
+    public void log(HttpServletRequest request, Map<String, Object> userMap, HttpServletResponse response,
+            long duration, Object result, Throwable error) {
+        AppProperties.Logging config = appProperties.getLogging();
+        if (!config.isSaveOperationLog()) {
             return;
         }
         try {
-            Map<String, Object> data = new HashMap<>();
+            String method = request.getMethod();
+            String uri = request.getRequestURI();
+            Integer status = response != null ? response.getStatus() : null;
+            boolean failed = error != null || (status != null && (status < 200 || status >= 300))
+                    || (result instanceof ApiResponse && !Integer.valueOf(ResultCode.SUCCESS.getCode()).equals(((ApiResponse<?>) result).get("code")));
+            boolean slow = duration >= config.getSlowThresholdMs();
+            boolean logged = failed || slow || ThreadLocalRandom.current().nextDouble() < sampleRate(uri);
+            aggregate(method, uri, duration, failed, slow, logged);
+            if (!logged) {
+                sampledOut.incrementAndGet();
+                return;
+            }
+
+            Object userId;
+            Object username;
             if (userMap != null) {
-                Object userId = userMap.get("userId");
+                userId = userMap.get("userId");
                 // 确保userId为整数类型
-                if (userId != null) {
+                if (userId instanceof String) {
                     try {
-                        if (userId instanceof String) {
-                            // 如果是字符串，尝试转换为整数
-                            data.put("user_id", Integer.parseInt((String) userId));
-                        } else {
-                            data.put("user_id", userId);
-                        }
+                        userId = Integer.parseInt((String) userId);
                     } catch (NumberFormatException e) {
                         // 转换失败时设置为null
-                        data.put("user_id", null);
+                        userId = null;
                     }
-                } else {
-                    data.put("user_id", null);
                 }
-                data.put("username", userMap.get("username"));
+                username = userMap.get("username");
             } else {
-                // 当userMap为null时，明确设置为null
-                data.put("user_id", -1);
-                data.put("username", "系统用户");
-            }
-            data.put("method", request.getMethod());
-            data.put("request_uri", request.getRequestURI());
-            data.put("client_ip", Tools.getIpAddr((ServletRequestAttributes) RequestContextHolder.getRequestAttributes()));
-            // 尝试序列化参数
-            try {
-                String paramsJson = objectMapper.writeValueAsString(request.getParameterMap());
-                data.put("params", paramsJson);
-            } catch (Exception ignore) {
-            }
-            if (response != null) {
-                data.put("status", response.getStatus());
+                userId = -1;
+                username = "系统用户";
             }
-            data.put("duration_ms", (int) duration);
+            // 参数与响应按字符上限流式序列化，达到上限即中止，开销不随请求/响应大小增长
+            String params = TruncatingWriter.writeJson(objectMapper, request.getParameterMap(), config.getMaxParamsChars());
+            String responseBody = null;
             if (result != null) {
-                String respStr = objectMapper.writeValueAsString(result);
-                // 若长度过长，只截取前2000字符
-                if (respStr.length() > 2000) {
-                    respStr = respStr.substring(0, 2000) + "...";
-                }
-                data.put("response_body", respStr);
+                responseBody = TruncatingWriter.writeJson(objectMapper, result, config.getMaxResponseChars());
+            } else if (error != null) {
+                responseBody = StrUtil.maxLength(error.toString(), config.getMaxResponseChars());
             }
-            // 新增：记录当前时间戳
-            commonService.saveData("system_log", data);
+            Event event = new Event(userId, username, method, uri, params,
+                    Tools.getIpAddr((ServletRequestAttributes) RequestContextHolder.getRequestAttributes()),
+                    status, responseBody, duration,
+                    new Timestamp(System.currentTimeMillis()));
+            enqueue(event);
         } catch (Exception e) {
             // 日志记录失败不能影响主流程
-            e.printStackTrace();
             log.error("记录操作日志失败: {}", e.getMessage());
         }
     }
+
+    /**
+     * 解析 URI 的采样率：按配置顺序取第一个匹配的模式，未匹配时为默认采样率
+     */
+    private double sampleRate(String uri) {
+        Double rate = sampleRates.get(uri);
+        if (rate != null) {
+            return rate;
+        }
+        AppProperties.Logging config = appProperties.getLogging();
+        rate = config.getSampleRate();
+        for (Map.Entry<String, Double> entry : config.getUriSampleRates().entrySet()) {
+            if (entry.getKey().equals(uri) || pathMatcher.match(entry.getKey(), uri)) {
+                rate = entry.getValue();
+                break;
+            }
+        }
+        if (sampleRates.size() < MAX_CACHED_RATES) {
+            sampleRates.put(uri, rate);
+        }
+        return rate;
+    }
+
+    private void aggregate(String method, String uri, long duration, boolean failed, boolean slow, boolean logged) {
+        String key = method + " " + uri;
+        UriStats stats = aggregates.get(key);
+        if (stats == null) {
+            if (aggregates.size() >= appProperties.getLogging().getMaxAggregateUris()) {
+                // URI 过多（如路径中带 ID）时合并统计，避免内存无限增长
+                key = method + " *";
+                uri = "*";
+            }
+            String statsUri = uri;
+            stats = aggregates.computeIfAbsent(key, k -> new UriStats(method, statsUri));
+        }
+        stats.count.increment();
+        stats.totalMs.add(duration);
+        stats.maxMs.accumulateAndGet(duration, Math::max);
+        if (failed) {
+            stats.errors.increment();
+        }
+        if (slow) {
+            stats.slow.increment();
+        }
+        if (logged) {
+            stats.logged.increment();
+        }
+    }
+
+    private void enqueue(Event event) {
+        AppProperties.Logging config = appProperties.getLogging();
+        boolean accepted = queue.offer(event);
+        if (!accepted && "block".equalsIgnoreCase(config.getOverflowPolicy())) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getBlockTimeoutMs());
+            while (!accepted && System.nanoTime() < deadline) {
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+                accepted = queue.offer(event);
+            }
+        }
+        if (!accepted) {
+            long count = dropped.incrementAndGet();
+            if (count == 1 || count % 1000 == 0) {
+                log.warn("操作日志队列已满，已丢弃 {} 条", count);
+            }
+            return;
+        }
+        enqueued.incrementAndGet();
+        if (queue.size() >= flushSize()) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * 运行统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", queue.size());
+        stats.put("capacity", queue.capacity());
+        stats.put("enqueued", enqueued.get());
+        stats.put("dropped", dropped.get());
+        stats.put("flushed", flushed.get());
+        stats.put("failed", failed.get());
+        stats.put("batches", batches.get());
+        stats.put("sampledOut", sampledOut.get());
+        stats.put("aggregateUris", aggregates.size());
+        return stats;
+    }
+
+    private void run() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(10, appProperties.getLogging().getFlushIntervalMs()));
+        while (running) {
+            LockSupport.parkNanos(this, intervalNanos);
+            flush();
+            if (System.currentTimeMillis() - windowStart >= appProperties.getLogging().getAggregateFlushIntervalMs()) {
+                flushAggregates();
+            }
+        }
+    }
+
+    private void flush() {
+        int flushSize = flushSize();
+        List<Event> events = new ArrayList<>(flushSize);
+        while (queue.drain(events, flushSize) > 0) {
+            // 按目标表分组：分桶存储时一批事件可能跨越分桶边界
+            Map<String, List<Map<String, Object>>> rowsByTable = new LinkedHashMap<>();
+            try {
+                boolean partitioned = logStorageService.isPartitioned(TABLE);
+                for (Event event : events) {
+                    String target = partitioned ? logStorageService.bucketFor(event.createdAt) : TABLE;
+                    rowsByTable.computeIfAbsent(target, t -> new ArrayList<>(events.size())).add(event.toRow());
+                }
+            } catch (Exception e) {
+                failed.addAndGet(events.size());
+                log.error("创建操作日志分桶失败，丢弃 {} 条: {}", events.size(), e.getMessage());
+                events.clear();
+                continue;
+            }
+            for (Map.Entry<String, List<Map<String, Object>>> entry : rowsByTable.entrySet()) {
+                List<Map<String, Object>> rows = entry.getValue();
+                try {
+                    baseService.insertPrepared(TABLE, entry.getKey(), rows);
+                    flushed.addAndGet(rows.size());
+                    batches.incrementAndGet();
+                } catch (Exception e) {
+                    failed.addAndGet(rows.size());
+                    log.error("批量写入操作日志失败，丢弃 {} 条: {}", rows.size(), e.getMessage());
+                }
+            }
+            events.clear();
+        }
+    }
+
+    /**
+     * 写入当前统计窗口的按 URI 汇总并开始新窗口。计数用 sumThenReset 读取，
+     * 与并发累加交错的少量请求计入下一个窗口，不会丢失
+     */
+    private void flushAggregates() {
+        long start = windowStart;
+        long end = System.currentTimeMillis();
+        windowStart = end;
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (UriStats stats : aggregates.values()) {
+            long count = stats.count.sumThenReset();
+            if (count == 0) {
+                continue;
+            }
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("method", stats.method);
+            row.put("request_uri", stats.uri);
+            row.put("window_start", new Timestamp(start));
+            row.put("window_end", new Timestamp(end));
+            row.put("request_count", count);
+            row.put("error_count", stats.errors.sumThenReset());
+            row.put("slow_count", stats.slow.sumThenReset());
+            row.put("logged_count", stats.logged.sumThenReset());
+            row.put("total_duration_ms", stats.totalMs.sumThenReset());
+            row.put("max_duration_ms", stats.maxMs.getAndSet(0));
+            rows.add(row);
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            baseService.insertPrepared(AGGREGATE_TABLE, rows);
+        } catch (Exception e) {
+            log.error("写入操作日志汇总失败，丢弃 {} 条: {}", rows.size(), e.getMessage());
+        }
+    }
+
+    private int flushSize() {
+        return Math.max(1, appProperties.getLogging().getFlushSize());
+    }
+
+    /**
+     * 单个 URI 在当前窗口内的汇总
+     */
+    private static final class UriStats {
+
+        private final String method;
+        private final String uri;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder slow = new LongAdder();
+        private final LongAdder logged = new LongAdder();
+        private final LongAdder totalMs = new LongAdder();
+        private final AtomicLong maxMs = new AtomicLong();
+
+        private UriStats(String method, String uri) {
+            this.method = method;
+            this.uri = uri;
+        }
+    }
+
+    /**
+     * 一条操作日志，在请求线程中构造后不再修改
+     */
+    private static final class Event {
+
+        private final Object userId;
+        private final Object username;
+        private final String method;
+        private final String requestUri;
+        private final String params;
+        private final String clientIp;
+        private final Integer status;
+        private final String responseBody;
+        private final long durationMs;
+        private final Timestamp createdAt;
+
+        private Event(Object userId, Object username, String method, String requestUri, String params,
+                String clientIp, Integer status, String responseBody, long durationMs, Timestamp createdAt) {
+            this.userId = userId;
+            this.username = username;
+            this.method = method;
+            this.requestUri = requestUri;
+            this.params = params;
+            this.clientIp = clientIp;
+            this.status = status;
+            this.responseBody = responseBody;
+            this.durationMs = durationMs;
+            this.createdAt = createdAt;
+        }
+
+        /**
+         * 转换为 system_log 行；字段集合固定，整批共用一条 INSERT 语句
+         */
+        private Map<String, Object> toRow() {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("user_id", userId);
+            row.put("username", username);
+            row.put("method", method);
+            row.put("request_uri", requestUri);
+            row.put("params", params);
+            row.put("client_ip", clientIp);
+            row.put("status", status);
+            row.put("response_body", responseBody);
+            row.put("duration_ms", durationMs);
+            // 事件发生时间，而不是写入时间
+            row.put("created_at", createdAt);
+            return row;
+        }
+    }
 }
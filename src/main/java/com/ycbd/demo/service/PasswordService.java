@@ -0,0 +1,141 @@
+package com.ycbd.demo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import com.ycbd.demo.config.AppProperties;
+
+import cn.hutool.core.map.MapUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.BCrypt;
+
+/**
+ * 密码哈希与校验。
+ *
+ * BCrypt 工作因子由 app.password.bcrypt-cost 配置；批量导入时在 passwordHashExecutor 上分片并行计算，
+ * 全部完成后写回各行再入库；登录校验在独立的有界线程池 loginExecutor 上执行，排队满时直接拒绝。
+ */
+@Service
+public class PasswordService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordService.class);
+
+    private static final String PASSWORD_FIELD = "password";
+
+    /** 每个并行任务至少处理的行数，避免任务调度开销超过哈希本身 */
+    private static final int MIN_SLICE_SIZE = 8;
+
+    @Autowired
+    private AppProperties appProperties;
+
+    @Autowired
+    @Qualifier("passwordHashExecutor")
+    private Executor passwordHashExecutor;
+
+    @Autowired
+    @Qualifier("loginExecutor")
+    private Executor loginExecutor;
+
+    /**
+     * 计算密码哈希
+     */
+    public String hash(String plain) {
+        return BCrypt.hashpw(plain, BCrypt.gensalt(cost()));
+    }
+
+    /**
+     * 处理单行的密码字段：有值时替换为哈希，为空时移除（更新时不传密码则不修改）
+     */
+    public void hashField(Map<String, Object> data) {
+        String plain = MapUtil.getStr(data, PASSWORD_FIELD);
+        if (StrUtil.isNotEmpty(plain)) {
+            data.put(PASSWORD_FIELD, hash(plain));
+        } else {
+            data.remove(PASSWORD_FIELD);
+        }
+    }
+
+    /**
+     * 批量处理密码字段：需要哈希的行按线程数分片并行计算，全部完成后返回
+     */
+    public void hashFields(List<Map<String, Object>> rows) {
+        List<Map<String, Object>> pending = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            if (StrUtil.isNotEmpty(MapUtil.getStr(row, PASSWORD_FIELD))) {
+                pending.add(row);
+            } else {
+                row.remove(PASSWORD_FIELD);
+            }
+        }
+        if (pending.size() <= 1) {
+            pending.forEach(this::hashField);
+            return;
+        }
+
+        int cost = cost();
+        int parallelism = appProperties.getPassword().getHashPoolSize();
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        int sliceSize = Math.max(MIN_SLICE_SIZE, (pending.size() + parallelism - 1) / parallelism);
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int from = 0; from < pending.size(); from += sliceSize) {
+            List<Map<String, Object>> slice = pending.subList(from, Math.min(from + sliceSize, pending.size()));
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (Map<String, Object> row : slice) {
+                    row.put(PASSWORD_FIELD, BCrypt.hashpw(MapUtil.getStr(row, PASSWORD_FIELD), BCrypt.gensalt(cost)));
+                }
+            }, passwordHashExecutor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        logger.debug("批量计算密码哈希 {} 条，{} 个分片，cost={}，耗时 {}ms",
+                pending.size(), futures.size(), cost, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 在登录线程池上校验密码
+     *
+     * @throws java.util.concurrent.RejectedExecutionException 登录校验排队已满
+     * @throws IllegalStateException 校验超时
+     */
+    public boolean matches(String plain, String hashed) {
+        if (StrUtil.isEmpty(hashed)) {
+            return false;
+        }
+        CompletableFuture<Boolean> future = CompletableFuture.supplyAsync(() -> BCrypt.checkpw(plain, hashed), loginExecutor);
+        try {
+            return future.get(appProperties.getPassword().getLoginTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new IllegalStateException("密码校验超时");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("密码校验被中断");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        }
+    }
+
+    private int cost() {
+        // BCrypt 仅支持 4-31
+        return Math.max(4, Math.min(31, appProperties.getPassword().getBcryptCost()));
+    }
+}
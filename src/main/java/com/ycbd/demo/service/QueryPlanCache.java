@@ -0,0 +1,248 @@
+package com.ycbd.demo.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.ycbd.demo.utils.SqlWhereBuilder;
+import com.ycbd.demo.utils.Tools;
+
+import cn.hutool.core.util.StrUtil;
+
+/**
+ * 查询计划缓存。
+ *
+ * 以（表名，排序后的参数名集合及取值形态）作为查询形态的 key，缓存后缀解析（_like/_in/_range）、
+ * 字段映射、列类型与查询规则解析的结果；同一形态的请求只需代入取值即可编译 WHERE 子句。
+ *
+ * 缓存项记录编译时的元数据版本，元数据快照重新编译后旧计划自动失效；
+ * 缓存容量有上限，超出时淘汰任意一项。
+ */
+@Service
+public class QueryPlanCache {
+
+    /** 最大缓存的查询形态数 */
+    private static final int MAX_PLANS = 1024;
+
+    @Autowired
+    private MetaService metaService;
+
+    private final Map<String, QueryPlan> plans = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * 编译查询参数对应的 WHERE 子句
+     */
+    public SqlWhereBuilder.Compiled compile(String table, Map<String, Object> params) {
+        if (params == null || params.isEmpty()) {
+            return SqlWhereBuilder.Compiled.EMPTY;
+        }
+        TableMetadata metadata = metaService.getTableMetadata(table);
+        String key = shapeKey(table, params);
+
+        QueryPlan plan = plans.get(key);
+        if (plan != null && plan.version == metadata.getVersion()) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            if (plan != null) {
+                // 元数据已变更，旧计划作废
+                evictions.incrementAndGet();
+            }
+            plan = buildPlan(table, metadata, params);
+            if (plans.size() >= MAX_PLANS && !plans.containsKey(key)) {
+                evictOne();
+            }
+            plans.put(key, plan);
+        }
+        return plan.bind(params);
+    }
+
+    /**
+     * 缓存统计
+     */
+    public Map<String, Object> getStats() {
+        long h = hits.get();
+        long m = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", plans.size());
+        stats.put("maxSize", MAX_PLANS);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("evictions", evictions.get());
+        stats.put("hitRate", h + m == 0 ? 0D : (double) h / (h + m));
+        return stats;
+    }
+
+    /**
+     * 清空全部查询计划
+     */
+    public void clear() {
+        plans.clear();
+    }
+
+    // -------------------- 内部实现 ---------------------
+
+    private void evictOne() {
+        Iterator<String> it = plans.keySet().iterator();
+        if (it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * 查询形态 key：表名 + 排序后的非空参数名及取值形态（L=列表, C=逗号分隔, V=单值）。
+     * 取值形态会影响是否自动识别为 IN 查询，因此需要参与 key。
+     */
+    private String shapeKey(String table, Map<String, Object> params) {
+        List<String> keys = new ArrayList<>(params.size());
+        for (Map.Entry<String, Object> entry : params.entrySet()) {
+            Object value = entry.getValue();
+            if (value == null || "".equals(value)) {
+                continue;
+            }
+            char shape = value instanceof List ? 'L'
+                    : (value instanceof String && ((String) value).contains(",")) ? 'C' : 'V';
+            keys.add(entry.getKey() + ':' + shape);
+        }
+        Collections.sort(keys);
+        StringBuilder sb = new StringBuilder(table);
+        for (String k : keys) {
+            sb.append('|').append(k);
+        }
+        return sb.toString();
+    }
+
+    private QueryPlan buildPlan(String table, TableMetadata metadata, Map<String, Object> params) {
+        Map<String, String> fieldMappings = metadata.getFieldMappings();
+
+        List<String> keys = new ArrayList<>(params.keySet());
+        Collections.sort(keys);
+
+        // 列名 -> 步骤；同一列出现多次时以后出现的参数为准
+        Map<String, Step> steps = new LinkedHashMap<>();
+        for (String originalKey : keys) {
+            Object valueObj = params.get(originalKey);
+            if (valueObj == null || "".equals(valueObj) || isReserved(table, originalKey)) {
+                continue;
+            }
+
+            String columnName = originalKey;
+            String overrideQueryType = null;
+
+            // 处理特殊后缀
+            if (originalKey.endsWith("_like")) {
+                columnName = originalKey.substring(0, originalKey.length() - 5);
+                overrideQueryType = "like";
+            } else if (originalKey.endsWith("_in")) {
+                columnName = originalKey.substring(0, originalKey.length() - 3);
+                overrideQueryType = "in";
+            } else if (originalKey.endsWith("_between") || originalKey.endsWith("_range")) {
+                int idx = originalKey.lastIndexOf("_");
+                columnName = originalKey.substring(0, idx);
+                overrideQueryType = "range";
+            } else if (valueObj instanceof List || (valueObj instanceof String && ((String) valueObj).contains(","))) {
+                // 如果值为列表或以逗号分隔，自动识别为 IN 查询
+                overrideQueryType = "in";
+            }
+
+            // ---------- 字段映射 ----------
+            String mapped = fieldMappings.get(columnName);
+            if (StrUtil.isNotBlank(mapped)) {
+                columnName = mapped;
+            }
+
+            // 未在属性表中定义的字段按字符串等值处理
+            TableMetadata.Column column = metadata.getColumn(columnName);
+            String queryType = overrideQueryType != null ? overrideQueryType
+                    : (column != null ? column.getQueryType() : "eq");
+            int columnType = column != null ? column.getBuilderColumnType() : 1;
+
+            steps.remove(columnName);
+            steps.put(columnName, new Step(originalKey, overrideQueryType,
+                    new SqlWhereBuilder.Condition(table, columnName, queryType, columnType)));
+        }
+        return new QueryPlan(metadata.getVersion(), new ArrayList<>(steps.values()));
+    }
+
+    /**
+     * 分页/排序保留参数及特定表的无效字段不参与条件构建
+     */
+    private boolean isReserved(String table, String key) {
+        switch (key) {
+            case "pageindex":
+            case "pagesize":
+            case "sortbyandtype":
+            case "offset":
+            case "limit":
+            case "columns":
+                return true;
+            case "is_deleted":
+            case "roles":
+            case "roles_in":
+                return "sys_user".equals(table);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 单个参数的处理步骤
+     */
+    private static final class Step {
+
+        private final String paramKey;
+        private final String overrideQueryType;
+        private final SqlWhereBuilder.Condition condition;
+
+        private Step(String paramKey, String overrideQueryType, SqlWhereBuilder.Condition condition) {
+            this.paramKey = paramKey;
+            this.overrideQueryType = overrideQueryType;
+            this.condition = condition;
+        }
+    }
+
+    /**
+     * 某一查询形态的编译计划
+     */
+    private static final class QueryPlan {
+
+        private final long version;
+        private final List<Step> steps;
+        private final List<SqlWhereBuilder.Condition> conditions;
+
+        private QueryPlan(long version, List<Step> steps) {
+            this.version = version;
+            this.steps = steps;
+            List<SqlWhereBuilder.Condition> list = new ArrayList<>(steps.size());
+            for (Step step : steps) {
+                list.add(step.condition);
+            }
+            this.conditions = list;
+        }
+
+        private SqlWhereBuilder.Compiled bind(Map<String, Object> params) {
+            if (steps.isEmpty()) {
+                return SqlWhereBuilder.Compiled.EMPTY;
+            }
+            List<String> values = new ArrayList<>(steps.size());
+            for (Step step : steps) {
+                values.add(Tools.convertValueToString(params.get(step.paramKey), step.overrideQueryType));
+            }
+            return SqlWhereBuilder.compile(conditions, values, true);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.ycbd.demo.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.ycbd.demo.config.AppProperties;
+import com.ycbd.demo.utils.CompactRow;
+
+/**
+ * 表级查询结果缓存。
+ *
+ * 仅对 table_attribute.cache_ttl_seconds > 0 的表生效，key 为表名 + 编译后的 SQL + 绑定值。
+ * 每张表维护一个版本号，写入时立即递增并在事务结束后再递增一次；
+ * 缓存项记录查询开始前读取的版本号，版本不一致即视为失效，因此不会返回写入之前的结果。
+ *
+ * 容量按 LRU 限制，命中时返回副本，调用方修改结果不会影响缓存。
+ */
+@Service
+public class QueryResultCache {
+
+    @Autowired
+    private MetaService metaService;
+
+    @Autowired
+    private AppProperties appProperties;
+
+    /** 表名 -> 数据版本 */
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    /** 表名 -> [命中, 未命中] */
+    private final Map<String, AtomicLong[]> tableStats = new ConcurrentHashMap<>();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > appProperties.getQuery().getResultCacheMaxEntries()) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * 表是否开启了结果缓存
+     */
+    public boolean isEnabled(String table) {
+        return metaService.getTableMetadata(table).getCacheTtlSeconds() > 0;
+    }
+
+    /**
+     * 从缓存读取结果，未命中时执行 loader 并写入缓存。表未开启缓存或处于事务中时直接执行 loader。
+     *
+     * @param table 表名
+     * @param key 查询 key（不含表名），见 {@link #key}
+     * @param loader 实际查询
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String table, String key, Supplier<T> loader) {
+        int ttl = metaService.getTableMetadata(table).getCacheTtlSeconds();
+        // 事务内的读取可能看到本事务未提交的写入，不读也不写缓存
+        if (ttl <= 0 || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return loader.get();
+        }
+        String fullKey = table + '\u0001' + key;
+        AtomicLong version = versions.computeIfAbsent(table, t -> new AtomicLong());
+        AtomicLong[] stats = tableStats.computeIfAbsent(table, t -> new AtomicLong[]{new AtomicLong(), new AtomicLong()});
+
+        long current = version.get();
+        long now = System.nanoTime();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(fullKey);
+        }
+        if (entry != null && entry.version == current && now - entry.expiresAt < 0) {
+            stats[0].incrementAndGet();
+            return (T) copy(entry.value);
+        }
+
+        stats[1].incrementAndGet();
+        // 版本号须在查询开始前读取，查询期间发生的写入会使本次结果在下次读取时失效
+        T value = loader.get();
+        Entry fresh = new Entry(copy(value), current, now + TimeUnit.SECONDS.toNanos(ttl));
+        synchronized (entries) {
+            entries.put(fullKey, fresh);
+        }
+        return value;
+    }
+
+    /**
+     * 表数据被写入后的回调：立即递增版本，并在所在事务结束后再递增一次，
+     * 避免其他事务在提交前把旧数据重新写入缓存。
+     */
+    public void onTableWritten(String table) {
+        if (table == null) {
+            return;
+        }
+        AtomicLong version = versions.computeIfAbsent(table, t -> new AtomicLong());
+        version.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    version.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    /**
+     * 构建查询 key：SQL 片段与绑定值（含类型，避免 "1" 与 1 冲突）
+     */
+    public static String key(List<Object> params, Object... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (Object part : parts) {
+            sb.append(part).append('\u0001');
+        }
+        for (Object param : params) {
+            sb.append(param == null ? "null" : param.getClass().getSimpleName()).append(':').append(param).append('\u0002');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 缓存统计，含各表命中率
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxSize", appProperties.getQuery().getResultCacheMaxEntries());
+        stats.put("evictions", evictions.get());
+        Map<String, Object> tables = new LinkedHashMap<>();
+        for (Map.Entry<String, AtomicLong[]> e : tableStats.entrySet()) {
+            long h = e.getValue()[0].get();
+            long m = e.getValue()[1].get();
+            Map<String, Object> t = new LinkedHashMap<>();
+            t.put("hits", h);
+            t.put("misses", m);
+            t.put("hitRate", h + m == 0 ? 0D : (double) h / (h + m));
+            AtomicLong version = versions.get(e.getKey());
+            t.put("version", version != null ? version.get() : 0L);
+            tables.put(e.getKey(), t);
+        }
+        stats.put("tables", tables);
+        return stats;
+    }
+
+    /**
+     * 清空全部缓存
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * 列表结果逐行复制，其余（计数等不可变值）原样返回
+     */
+    private static Object copy(Object value) {
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            List<Object> copied = new ArrayList<>(list.size());
+            for (Object item : list) {
+                if (item instanceof CompactRow) {
+                    copied.add(((CompactRow) item).copy());
+                } else if (item instanceof Map) {
+                    copied.add(new HashMap<>((Map<?, ?>) item));
+                } else {
+                    copied.add(item);
+                }
+            }
+            return copied;
+        }
+        return value;
+    }
+
+    private static final class Entry {
+
+        private final Object value;
+        private final long version;
+        private final long expiresAt;
+
+        private Entry(Object value, long version, long expiresAt) {
+            this.value = value;
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.ycbd.demo.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import cn.hutool.core.map.MapUtil;
+import cn.hutool.core.util.StrUtil;
+
+/**
+ * 表元数据快照。由 table_attribute / column_attribute / 全局字段映射编译而成，创建后不可变。
+ *
+ * 快照由 {@link MetaService} 按表缓存，配置变更时整体替换（而不是原地修改），
+ * 因此调用方可以在热路径上放心持有并读取，无需再查库或复制 Map。
+ */
+public final class TableMetadata {
+
+    private static final Logger logger = LoggerFactory.getLogger(TableMetadata.class);
+
+    private final String table;
+    private final long version;
+    private final Map<String, Object> tableAttr;
+    private final List<Column> columns;
+    private final Map<String, Column> columnMap;
+    private final String primaryKey;
+    private final Map<String, String> fieldMappings;
+    private final List<Map<String, Object>> columnAttrs;
+    private final List<String> listColumns;
+    private final List<String> conflictKeys;
+    private final int cacheTtlSeconds;
+    private final String writeBehind;
+
+    TableMetadata(String table, long version, Map<String, Object> tableAttr,
+            List<Map<String, Object>> normalizedAttrs, Map<String, String> fieldMappings) {
+        this.table = table;
+        this.version = version;
+        this.tableAttr = Collections.unmodifiableMap(tableAttr);
+
+        List<Column> cols = new ArrayList<>(normalizedAttrs.size());
+        Map<String, Column> colMap = new LinkedHashMap<>();
+        List<Map<String, Object>> attrs = new ArrayList<>(normalizedAttrs.size());
+        String pk = null;
+        for (Map<String, Object> attr : normalizedAttrs) {
+            Map<String, Object> frozen = Collections.unmodifiableMap(attr);
+            attrs.add(frozen);
+            Column column = new Column(frozen);
+            if (StrUtil.isBlank(column.getName())) {
+                continue;
+            }
+            cols.add(column);
+            // 与原 getPriKeyColumn 的 LIMIT 1 语义一致：取第一个主键列
+            colMap.putIfAbsent(column.getName(), column);
+            if (pk == null && column.isPri()) {
+                pk = column.getName();
+            }
+        }
+        this.columns = Collections.unmodifiableList(cols);
+        this.columnMap = Collections.unmodifiableMap(colMap);
+        this.columnAttrs = Collections.unmodifiableList(attrs);
+        this.primaryKey = pk != null ? pk : "id";
+        this.fieldMappings = Collections.unmodifiableMap(fieldMappings);
+
+        // 列表投影：主键 + is_show_in_list 字段；未配置列表字段时为空，表示查询全部字段
+        List<String> list = new ArrayList<>();
+        for (Column column : cols) {
+            if (column.isShowInList() && !list.contains(column.getName())) {
+                list.add(column.getName());
+            }
+        }
+        if (!list.isEmpty() && !list.contains(primaryKey)) {
+            list.add(0, primaryKey);
+        }
+        this.listColumns = Collections.unmodifiableList(list);
+
+        // upsert 冲突键：is_unique 字段，未配置时为主键
+        List<String> unique = new ArrayList<>();
+        for (Column column : cols) {
+            if (column.isUnique() && !unique.contains(column.getName())) {
+                unique.add(column.getName());
+            }
+        }
+        if (unique.isEmpty()) {
+            unique.add(primaryKey);
+        }
+        this.conflictKeys = Collections.unmodifiableList(unique);
+        this.cacheTtlSeconds = MapUtil.getInt(tableAttr, "cache_ttl_seconds", 0);
+        this.writeBehind = writeBehindPolicy(table, MapUtil.getStr(tableAttr, "write_behind"));
+    }
+
+    /**
+     * 校验 write_behind 配置：只接受 block/drop/spill，未知取值记录错误并按同步写入处理，避免拼写错误落入丢弃分支
+     */
+    private static String writeBehindPolicy(String table, String value) {
+        if (StrUtil.isBlank(value)) {
+            return null;
+        }
+        String policy = value.trim().toLowerCase();
+        switch (policy) {
+            case WriteBehindService.POLICY_BLOCK:
+            case WriteBehindService.POLICY_DROP:
+            case WriteBehindService.POLICY_SPILL:
+                return policy;
+            default:
+                logger.error("表[{}]的 write_behind 取值[{}]无效（可选 block/drop/spill），已按同步写入处理", table, value);
+                return null;
+        }
+    }
+
+    /**
+     * 无任何配置时的空快照
+     */
+    static TableMetadata empty(String table) {
+        return new TableMetadata(table, 0L, Collections.emptyMap(), Collections.emptyList(), Collections.emptyMap());
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * 快照版本号，每次重新编译都会递增，可用于派生缓存的失效判断
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 表级属性（key 已小写），表未配置时为空 Map
+     */
+    public Map<String, Object> getTableAttr() {
+        return tableAttr;
+    }
+
+    /**
+     * 按 order_no 排序的字段描述
+     */
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    public Column getColumn(String columnName) {
+        return columnMap.get(columnName);
+    }
+
+    public boolean hasColumn(String columnName) {
+        return columnMap.containsKey(columnName);
+    }
+
+    /**
+     * 主键列名，未配置 is_pri 时默认 id
+     */
+    public String getPrimaryKey() {
+        return primaryKey;
+    }
+
+    /**
+     * 列表查询默认投影的字段（主键 + is_show_in_list），为空表示查询全部字段
+     */
+    public List<String> getListColumns() {
+        return listColumns;
+    }
+
+    /**
+     * upsert 判断记录是否已存在的字段（column_attribute.is_unique=1），未配置时为主键
+     */
+    public List<String> getConflictKeys() {
+        return conflictKeys;
+    }
+
+    /**
+     * 查询结果缓存秒数（table_attribute.cache_ttl_seconds），0 表示不缓存
+     */
+    public int getCacheTtlSeconds() {
+        return cacheTtlSeconds;
+    }
+
+    /**
+     * 异步写入时队列满的处理策略（table_attribute.write_behind：block/drop/spill），null 表示同步写入
+     */
+    public String getWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * 合并后的字段映射：全局映射(sys_dict_item FIELD_MAPPING)被表级 defin_columns.field_mapping 覆盖
+     */
+    public Map<String, String> getFieldMappings() {
+        return fieldMappings;
+    }
+
+    /**
+     * 兼容旧接口的字段属性列表（只读，key 及关键字段值均已小写）
+     */
+    public List<Map<String, Object>> getColumnAttrs() {
+        return columnAttrs;
+    }
+
+    /**
+     * 单个字段的编译结果
+     */
+    public static final class Column {
+
+        private final String name;
+        private final SerializedString jsonName;
+        private final String queryType;
+        private final int builderColumnType;
+        private final int columnType;
+        private final boolean required;
+        private final boolean pri;
+        private final boolean searchFlag;
+        private final boolean showInList;
+        private final boolean export;
+        private final boolean unique;
+        private final String defaultValue;
+        private final String fieldType;
+        private final Integer len;
+        private final String editType;
+        private final Map<String, Object> attrs;
+
+        Column(Map<String, Object> attr) {
+            this.attrs = attr;
+            this.name = MapUtil.getStr(attr, "column_name");
+            this.jsonName = name != null ? new SerializedString(name) : null;
+            this.queryType = MapUtil.getStr(attr, "query_type", MapUtil.getStr(attr, "querytype", "eq")).toLowerCase();
+            this.pri = MapUtil.getBool(attr, "is_pri", false);
+            this.required = MapUtil.getBool(attr, "is_required", false);
+            this.searchFlag = MapUtil.getInt(attr, "search_flag", 0) == 1;
+            this.showInList = MapUtil.getBool(attr, "is_show_in_list", false);
+            this.export = MapUtil.getBool(attr, "is_export", false);
+            this.unique = MapUtil.getBool(attr, "is_unique", false);
+            Object dv = attr.get("default_value");
+            this.defaultValue = dv != null && !dv.toString().isEmpty() ? dv.toString() : null;
+            this.fieldType = MapUtil.getStr(attr, "field_type");
+            this.len = attr.get("len") != null ? Integer.valueOf(attr.get("len").toString()) : null;
+            this.editType = MapUtil.getStr(attr, "edit_type");
+            this.columnType = MapUtil.getInt(attr, "column_type", 1);
+
+            // SqlWhereBuilder 使用的列类型：1=字符串, 2=数值, 3=布尔
+            String showType = MapUtil.getStr(attr, "show_type");
+            int type = 1;
+            if ("number".equalsIgnoreCase(showType)) {
+                type = 2;
+            } else if ("switch".equalsIgnoreCase(showType)) {
+                type = 3;
+            } else if ("hidden".equalsIgnoreCase(showType) && pri) {
+                type = 2;
+            }
+            this.builderColumnType = type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * 预编码的 JSON 字段名，流式序列化时直接写出，无需逐行转义
+         */
+        public SerializedString getJsonName() {
+            return jsonName;
+        }
+
+        /**
+         * 配置的匹配方式（小写），未配置时为 eq
+         */
+        public String getQueryType() {
+            return queryType;
+        }
+
+        /**
+         * 供 SqlWhereBuilder 使用的列类型：1=字符串, 2=数值, 3=布尔
+         */
+        public int getBuilderColumnType() {
+            return builderColumnType;
+        }
+
+        /**
+         * column_attribute.column_type 原值，未配置时为 1
+         */
+        public int getColumnType() {
+            return columnType;
+        }
+
+        public boolean isRequired() {
+            return required;
+        }
+
+        public boolean isPri() {
+            return pri;
+        }
+
+        public boolean isSearchFlag() {
+            return searchFlag;
+        }
+
+        public boolean isShowInList() {
+            return showInList;
+        }
+
+        public boolean isExport() {
+            return export;
+        }
+
+        /**
+         * 是否参与唯一约束（upsert 冲突键）
+         */
+        public boolean isUnique() {
+            return unique;
+        }
+
+        /**
+         * 默认值表达式，未配置时为 null
+         */
+        public String getDefaultValue() {
+            return defaultValue;
+        }
+
+        public String getFieldType() {
+            return fieldType;
+        }
+
+        public Integer getLen() {
+            return len;
+        }
+
+        public String getEditType() {
+            return editType;
+        }
+
+        /**
+         * 原始字段属性（只读）
+         */
+        public Map<String, Object> getAttrs() {
+            return attrs;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.ycbd.demo.service;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -33,6 +34,9 @@ public class TokenFieldConfigService {
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    /** 配置版本，每次刷新递增，供按配置过滤结果的缓存判断是否失效 */
+    private final AtomicLong configVersion = new AtomicLong();
+
     /**
      * 获取所有启用的Token字段 从column_attribute表的other_info字段中读取配置
      */
@@ -151,10 +155,19 @@ public class TokenFieldConfigService {
     }
 
     /**
-     * 刷新Token字段配置 同时更新UserContext中的缓存
+     * 当前配置版本
+     */
+    public long getConfigVersion() {
+        return configVersion.get();
+    }
+
+    /**
+     * 刷新Token字段配置 同时更新UserContext中的缓存。
+     * 先清除缓存再递增版本，读到新版本的调用方一定能取到新配置
      */
-    @CacheEvict(value = "token_fields", allEntries = true)
+    @CacheEvict(value = "token_fields", allEntries = true, beforeInvocation = true)
     public void refreshTokenFieldConfig() {
+        configVersion.incrementAndGet();
         Map<String, Boolean> config = getEnabledTokenFields();
         UserContext.refreshFieldConfig(config);
         logger.info("Token字段配置已刷新，共 {} 个字段", config.size());
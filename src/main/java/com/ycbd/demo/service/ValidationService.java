@@ -1,106 +1,319 @@
 package com.ycbd.demo.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ycbd.demo.mapper.SystemMapper;
 
+/**
+ * column_check_property 校验规则引擎。
+ *
+ * 每张表的规则编译一次（范围参数预先解析），记录编译时的元数据版本，规则表被写入后自动重新编译。
+ * 唯一性/存在性规则按整批数据执行：每条规则每 {@value #IN_CHUNK_SIZE} 个取值只发出一条
+ * 按取值序号 {@code UNION ALL} 的查询，批内重复在内存中判断，校验开销不再随 行数 × 规则数 增长。
+ */
 @Service
 public class ValidationService {
+
     private static final Logger logger = LoggerFactory.getLogger(ValidationService.class);
 
-    
+    /** 单条查询的最大取值个数 */
+    private static final int IN_CHUNK_SIZE = 500;
+
+    @Autowired
+    private SystemMapper systemMapper;
+
     @Autowired
-    private BaseService baseService;
-    
-private final ObjectMapper objectMapper = new ObjectMapper();
+    private MetaService metaService;
 
-    @Cacheable(value = "validation_rules", key = "#tableName")
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /** 表名 -> 编译后的规则 */
+    private final Map<String, CompiledRules> compiled = new ConcurrentHashMap<>();
+
+    /**
+     * 获取表的原始校验规则
+     */
     public List<Map<String, Object>> getValidationRules(String tableName) {
-        logger.info("从DB加载校验规则: {}", tableName);
-        return baseService.getValidationRules(tableName);
+        return systemMapper.getValidationRules(tableName);
     }
 
+    /**
+     * 校验单条数据
+     *
+     * @return 错误信息，为空表示通过
+     */
     public List<String> validate(String tableName, Map<String, Object> data) {
-        List<String> errors = new ArrayList<>();
-        List<Map<String, Object>> rules = getValidationRules(tableName);
-
-        for (Map<String, Object> rule : rules) {
-            String checkColumn = (String) rule.get("check_column");
-            String checkMode = (String) rule.get("check_mode");
-            Object value = data.get(checkColumn);
+        return validateBatch(tableName, Collections.singletonList(data)).get(0);
+    }
 
-            if (value == null || !StringUtils.hasText(value.toString())) {
-                continue; // 空值不校验，由IsRequired控制
-            }
-            
-boolean isValid = true;
+    /**
+     * 校验一批数据，唯一性/存在性规则按整批执行集合查询，并检查批内重复
+     *
+     * @return 与 rows 顺序一致的错误信息列表
+     */
+    public List<List<String>> validateBatch(String tableName, List<Map<String, Object>> rows) {
+        List<List<String>> errors = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            errors.add(new ArrayList<>());
+        }
+        for (Rule rule : getCompiledRules(tableName).rules) {
             try {
-                switch (checkMode) {
-                    case "isNotExit":
-                        isValid = checkNotExist(rule, value);
-                        break;
-                    case "isExit":
-                        isValid = checkExist(rule, value);
+                switch (rule.mode) {
+                    case RANGE:
+                        checkRange(rule, rows, errors);
                         break;
-                    case "isRang":
-                        isValid = checkRange(rule, value);
-                        break;
-                    case "MutiReapeat":
-                        isValid = checkMultiRepeat(rule, data);
+                    case UNIQUE:
+                    case EXIST:
+                        checkKeys(tableName, rule, rows, errors);
                         break;
                     default:
-                        logger.warn("未知的校验模式: {}", checkMode);
+                        break;
                 }
             } catch (Exception e) {
-                logger.error("校验时发生错误, rule id: {}", rule.get("id"), e);
-                errors.add("校验规则[" + checkColumn + "]执行失败");
-            }
-            
-if (!isValid) {
-                errors.add((String) rule.get("errorMsg"));
+                logger.error("校验时发生错误, rule id: {}", rule.id, e);
+                for (int i = 0; i < rows.size(); i++) {
+                    if (rule.tuple(rows.get(i)) != null) {
+                        errors.get(i).add("校验规则[" + rule.checkColumn + "]执行失败");
+                    }
+                }
             }
         }
         return errors;
     }
-    
-private boolean checkNotExist(Map<String, Object> rule, Object value) {
-        String targetTable = (String) rule.get("target_table");
-        String checkColumn = (String) rule.get("check_column");
-        long count = baseService.count(targetTable, null, String.format("%s = '%s'", checkColumn, value));
-        return count == 0;
+
+    private CompiledRules getCompiledRules(String tableName) {
+        long version = metaService.getTableMetadata(tableName).getVersion();
+        CompiledRules rules = compiled.get(tableName);
+        if (rules == null || rules.version != version) {
+            rules = compile(tableName, version);
+            compiled.put(tableName, rules);
+        }
+        return rules;
     }
-    
-private boolean checkExist(Map<String, Object> rule, Object value) {
-        return !checkNotExist(rule, value);
+
+    private CompiledRules compile(String tableName, long version) {
+        List<Rule> rules = new ArrayList<>();
+        for (Map<String, Object> raw : getValidationRules(tableName)) {
+            // 兼容数据库返回大写列名
+            Map<String, Object> attr = lowerCaseKeys(raw);
+            String checkMode = (String) attr.get("check_mode");
+            Mode mode = Mode.of(checkMode);
+            if (mode == null) {
+                logger.warn("未知的校验模式: {}", checkMode);
+                continue;
+            }
+            if (mode == Mode.REQUIRED) {
+                // 必填由 column_attribute.is_required 控制
+                continue;
+            }
+            try {
+                rules.add(new Rule(attr, mode, mode == Mode.RANGE ? parseRange(attr) : null));
+            } catch (Exception e) {
+                logger.error("校验规则编译失败, rule id: {}", attr.get("id"), e);
+            }
+        }
+        logger.debug("编译表[{}]的校验规则 {} 条", tableName, rules.size());
+        return new CompiledRules(version, rules);
     }
 
-    private boolean checkRange(Map<String, Object> rule, Object value) throws Exception {
-        String paramsJson = (String) rule.get("params");
-        Map<String, Integer> params = objectMapper.readValue(paramsJson, new TypeReference<Map<String, Integer>>() {});
-        int numValue = Integer.parseInt(value.toString());
-        
-        return numValue >= params.get("min") && numValue <= params.get("max");
+    private BigDecimal[] parseRange(Map<String, Object> attr) throws Exception {
+        Map<String, Object> params = objectMapper.readValue((String) attr.get("params"),
+                new TypeReference<Map<String, Object>>() {});
+        return new BigDecimal[]{new BigDecimal(params.get("min").toString()), new BigDecimal(params.get("max").toString())};
     }
 
-    private boolean checkMultiRepeat(Map<String, Object> rule, Map<String, Object> data) {
-        String targetTable = (String) rule.get("target_table");
-        String[] columns = ((String) rule.get("check_column")).split(",");
-        String where = Arrays.stream(columns)
-                .map(col -> String.format("%s = '%s'", col, data.get(col)))
-                .collect(Collectors.joining(" AND "));
-        long count = baseService.count(targetTable, null, where);
-        return count == 0;
+    private void checkRange(Rule rule, List<Map<String, Object>> rows, List<List<String>> errors) {
+        for (int i = 0; i < rows.size(); i++) {
+            List<Object> tuple = rule.tuple(rows.get(i));
+            if (tuple == null) {
+                continue;
+            }
+            boolean valid;
+            try {
+                BigDecimal value = new BigDecimal(tuple.get(0).toString().trim());
+                valid = value.compareTo(rule.range[0]) >= 0 && value.compareTo(rule.range[1]) <= 0;
+            } catch (NumberFormatException e) {
+                valid = false;
+            }
+            if (!valid) {
+                errors.get(i).add(rule.errorMsg);
+            }
+        }
+    }
+
+    /**
+     * 唯一性（UNIQUE）与存在性（EXIST）校验：整批取值去重后分块查询目标表。
+     * 每个取值带上序号作为一个查询分支，由数据库比较（大小写、尾随空格、日期格式等按列定义处理），返回命中的序号与主键。
+     * UNIQUE 规则校验的是本表时排除行自身（按主键），并检查批内重复（批内按取值原样比较）。
+     */
+    private void checkKeys(String tableName, Rule rule, List<Map<String, Object>> rows, List<List<String>> errors) {
+        boolean selfTable = rule.targetTable.equalsIgnoreCase(tableName);
+        String primaryKey = metaService.getTableMetadata(rule.targetTable).getPrimaryKey();
+
+        // 取值 -> 批内出现的行下标
+        Map<String, List<Integer>> occurrences = new LinkedHashMap<>();
+        Map<String, List<Object>> tuples = new LinkedHashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            List<Object> tuple = rule.tuple(rows.get(i));
+            if (tuple == null) {
+                continue;
+            }
+            String key = tupleKey(tuple);
+            occurrences.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            tuples.putIfAbsent(key, tuple);
+        }
+        if (tuples.isEmpty()) {
+            return;
+        }
+
+        // 取值序号 -> 目标表中已存在记录的主键；是否匹配由数据库按列类型与排序规则判断
+        Map<Integer, List<Object>> existing = new HashMap<>();
+        List<List<Object>> values = new ArrayList<>(tuples.values());
+        for (int from = 0; from < values.size(); from += IN_CHUNK_SIZE) {
+            List<List<Object>> chunk = values.subList(from, Math.min(from + IN_CHUNK_SIZE, values.size()));
+            for (Map<String, Object> found : systemMapper.selectTupleMatches(rule.targetTable, primaryKey, rule.columns, chunk)) {
+                Map<String, Object> row = lowerCaseKeys(found);
+                int idx = from + ((Number) row.get("idx")).intValue();
+                existing.computeIfAbsent(idx, k -> new ArrayList<>()).add(row.get("id"));
+            }
+        }
+
+        int idx = 0;
+        for (Map.Entry<String, List<Integer>> entry : occurrences.entrySet()) {
+            List<Object> ids = existing.getOrDefault(idx++, Collections.emptyList());
+            List<Integer> indexes = entry.getValue();
+            if (rule.mode == Mode.EXIST) {
+                if (ids.isEmpty()) {
+                    indexes.forEach(i -> errors.get(i).add(rule.errorMsg));
+                }
+                continue;
+            }
+            for (int n = 0; n < indexes.size(); n++) {
+                int i = indexes.get(n);
+                Object selfId = selfTable ? rows.get(i).get(primaryKey) : null;
+                boolean conflict = n > 0;
+                for (Object id : ids) {
+                    if (selfId == null || !Objects.equals(String.valueOf(id), String.valueOf(selfId))) {
+                        conflict = true;
+                        break;
+                    }
+                }
+                if (conflict) {
+                    errors.get(i).add(rule.errorMsg);
+                }
+            }
+        }
+    }
+
+    private static String tupleKey(List<Object> tuple) {
+        StringBuilder sb = new StringBuilder();
+        for (Object value : tuple) {
+            sb.append(value).append('\u0001');
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, Object> lowerCaseKeys(Map<String, Object> row) {
+        Map<String, Object> result = new HashMap<>();
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            result.put(entry.getKey().toLowerCase(), entry.getValue());
+        }
+        return result;
+    }
+
+    private enum Mode {
+        REQUIRED, UNIQUE, EXIST, RANGE;
+
+        static Mode of(String checkMode) {
+            if (checkMode == null) {
+                return null;
+            }
+            switch (checkMode) {
+                case "isNotExit":
+                case "MutiReapeat":
+                case "unique":
+                    return UNIQUE;
+                case "isExit":
+                    return EXIST;
+                case "isRang":
+                    return RANGE;
+                case "required":
+                    return REQUIRED;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static final class CompiledRules {
+
+        private final long version;
+        private final List<Rule> rules;
+
+        private CompiledRules(long version, List<Rule> rules) {
+            this.version = version;
+            this.rules = rules;
+        }
+    }
+
+    private static final class Rule {
+
+        private final Object id;
+        private final Mode mode;
+        private final String targetTable;
+        private final String checkColumn;
+        private final List<String> columns;
+        private final String errorMsg;
+        private final BigDecimal[] range;
+
+        private Rule(Map<String, Object> attr, Mode mode, BigDecimal[] range) {
+            this.id = attr.get("id");
+            this.mode = mode;
+            this.checkColumn = (String) attr.get("check_column");
+            this.targetTable = (String) attr.get("target_table");
+            List<String> cols = new ArrayList<>();
+            for (String col : Arrays.asList(checkColumn.split(","))) {
+                if (StringUtils.hasText(col)) {
+                    cols.add(col.trim());
+                }
+            }
+            this.columns = Collections.unmodifiableList(cols);
+            Object msg = attr.get("errormsg");
+            this.errorMsg = msg != null ? msg.toString() : "字段[" + checkColumn + "]校验未通过";
+            this.range = range;
+        }
+
+        /**
+         * 规则涉及字段的取值；任一字段为空时返回 null，表示不校验（空值由必填控制）
+         */
+        private List<Object> tuple(Map<String, Object> data) {
+            List<Object> tuple = new ArrayList<>(columns.size());
+            for (String column : columns) {
+                Object value = data.get(column);
+                if (value == null || !StringUtils.hasText(value.toString())) {
+                    return null;
+                }
+                tuple.add(value);
+            }
+            return tuple;
+        }
     }
-} 
+}
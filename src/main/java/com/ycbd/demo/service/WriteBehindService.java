@@ -0,0 +1,370 @@
+package com.ycbd.demo.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ycbd.demo.config.AppProperties;
+import com.ycbd.demo.utils.MpscRingBuffer;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 只追加表的异步写入（table_attribute.write_behind）。
+ *
+ * 请求线程完成校验与预处理后把行放入该表的有界无锁队列（{@link MpscRingBuffer}）即返回；
+ * 后台单线程按行数（app.write-behind.flush-size）或时间（flush-interval-ms）把积压的行组提交为一次 JDBC 批量插入。
+ * 队列满时按表配置的策略处理：block 等待后台刷写腾出空间（超时拒绝），drop 丢弃并计数，spill 追加到溢写文件。
+ * 刷写失败的行同样溢写；队列空闲时后台线程回放溢写文件（至少一次语义，进程在回放中途退出时可能重复插入）。
+ */
+@Service
+public class WriteBehindService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindService.class);
+
+    public static final String POLICY_BLOCK = "block";
+    public static final String POLICY_DROP = "drop";
+    public static final String POLICY_SPILL = "spill";
+
+    private static final String SPILL_SUFFIX = ".jsonl";
+    private static final String REPLAY_SUFFIX = ".jsonl.replay";
+
+    @Autowired
+    private AppProperties appProperties;
+
+    @Autowired
+    private BaseService baseService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, TableQueue> queues = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    @PostConstruct
+    public void start() {
+        // 上次运行遗留的溢写文件在启动后回放
+        Path dir = spillDir();
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path file : stream) {
+                    String name = file.getFileName().toString();
+                    String table = name.endsWith(REPLAY_SUFFIX) ? name.substring(0, name.length() - REPLAY_SUFFIX.length())
+                            : name.endsWith(SPILL_SUFFIX) ? name.substring(0, name.length() - SPILL_SUFFIX.length()) : null;
+                    if (table != null) {
+                        queue(table).spillPending = true;
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("读取溢写目录失败: {}", dir, e);
+            }
+        }
+        running = true;
+        writer = new Thread(this::run, "write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 后台线程已退出，由当前线程作为唯一消费者写完剩余数据
+        if (writer == null || !writer.isAlive()) {
+            flushAll();
+        }
+    }
+
+    /**
+     * 入队一行已完成预处理的数据
+     *
+     * @param policy 队列满时的策略（block/drop/spill，已在编译元数据时校验）
+     * @return 是否已接受；drop 策略下队列满时返回 false
+     * @throws IllegalStateException block 策略等待超时
+     */
+    public boolean enqueue(String table, Map<String, Object> row, String policy) {
+        TableQueue queue = queue(table);
+        if (offer(queue, row)) {
+            return true;
+        }
+        if (POLICY_BLOCK.equals(policy)) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(appProperties.getWriteBehind().getBlockTimeoutMs());
+            do {
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+                if (offer(queue, row)) {
+                    return true;
+                }
+            } while (System.nanoTime() < deadline);
+            queue.rejected.incrementAndGet();
+            throw new IllegalStateException("表[" + table + "]异步写入队列已满，请稍后重试");
+        }
+        if (POLICY_SPILL.equals(policy)) {
+            List<Map<String, Object>> rows = new ArrayList<>(1);
+            rows.add(row);
+            if (spill(queue, rows)) {
+                return true;
+            }
+        }
+        long dropped = queue.dropped.incrementAndGet();
+        if (dropped == 1 || dropped % 1000 == 0) {
+            logger.warn("表[{}]异步写入队列已满，已丢弃 {} 行", table, dropped);
+        }
+        return false;
+    }
+
+    private boolean offer(TableQueue queue, Map<String, Object> row) {
+        if (!queue.buffer.offer(row)) {
+            return false;
+        }
+        queue.enqueued.incrementAndGet();
+        if (queue.buffer.size() >= flushSize()) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    /**
+     * 运行统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> tables = new LinkedHashMap<>();
+        for (TableQueue queue : queues.values()) {
+            Map<String, Object> t = new LinkedHashMap<>();
+            t.put("queued", queue.buffer.size());
+            t.put("capacity", queue.buffer.capacity());
+            t.put("enqueued", queue.enqueued.get());
+            t.put("flushed", queue.flushed.get());
+            t.put("batches", queue.batches.get());
+            t.put("dropped", queue.dropped.get());
+            t.put("rejected", queue.rejected.get());
+            t.put("spilled", queue.spilled.get());
+            t.put("replayed", queue.replayed.get());
+            t.put("failed", queue.failed.get());
+            tables.put(queue.table, t);
+        }
+        return tables;
+    }
+
+    private void run() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(10, appProperties.getWriteBehind().getFlushIntervalMs()));
+        while (running) {
+            // 到达刷写间隔，或生产者积压达到 flushSize 时被提前唤醒
+            LockSupport.parkNanos(this, intervalNanos);
+            try {
+                flushAll();
+                replaySpills();
+            } catch (Exception e) {
+                logger.error("异步写入后台线程异常", e);
+            }
+        }
+    }
+
+    private void flushAll() {
+        int flushSize = flushSize();
+        for (TableQueue queue : queues.values()) {
+            while (!queue.buffer.isEmpty()) {
+                List<Map<String, Object>> batch = new ArrayList<>(Math.min(flushSize, queue.buffer.size()));
+                if (queue.buffer.drain(batch, flushSize) == 0) {
+                    break;
+                }
+                write(queue, batch);
+            }
+        }
+    }
+
+    private void write(TableQueue queue, List<Map<String, Object>> batch) {
+        try {
+            baseService.insertPrepared(queue.table, batch);
+            queue.flushed.addAndGet(batch.size());
+            queue.batches.incrementAndGet();
+        } catch (Exception e) {
+            logger.error("表[{}]异步写入 {} 行失败，转入溢写文件", queue.table, batch.size(), e);
+            queue.failed.addAndGet(batch.size());
+            spill(queue, batch);
+        }
+    }
+
+    /**
+     * 追加到表的溢写文件（每行一个 JSON 对象）
+     */
+    private boolean spill(TableQueue queue, List<Map<String, Object>> rows) {
+        synchronized (queue) {
+            Path file = spillDir().resolve(fileName(queue.table) + SPILL_SUFFIX);
+            try {
+                Files.createDirectories(file.getParent());
+                try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (Map<String, Object> row : rows) {
+                        out.write(objectMapper.writeValueAsString(toSpillable(row)));
+                        out.newLine();
+                    }
+                }
+                queue.spilled.addAndGet(rows.size());
+                queue.spillPending = true;
+                return true;
+            } catch (IOException e) {
+                logger.error("表[{}]写入溢写文件失败，丢弃 {} 行", queue.table, rows.size(), e);
+                queue.dropped.addAndGet(rows.size());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 队列空闲时回放溢写文件：先改名为 .replay 再按 flushSize 分批插入，全部成功后删除；
+     * 失败时改名为 .failed-时间戳 保留现场，不再自动回放
+     */
+    private void replaySpills() {
+        for (TableQueue queue : queues.values()) {
+            if (!queue.spillPending || !queue.buffer.isEmpty()) {
+                continue;
+            }
+            Path dir = spillDir();
+            Path spill = dir.resolve(fileName(queue.table) + SPILL_SUFFIX);
+            Path replay = dir.resolve(fileName(queue.table) + REPLAY_SUFFIX);
+            try {
+                synchronized (queue) {
+                    queue.spillPending = false;
+                    if (!Files.exists(replay)) {
+                        if (!Files.exists(spill)) {
+                            continue;
+                        }
+                        Files.move(spill, replay, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                }
+                replay(queue, replay);
+                Files.delete(replay);
+            } catch (Exception e) {
+                logger.error("表[{}]回放溢写文件失败", queue.table, e);
+                try {
+                    if (Files.exists(replay)) {
+                        Files.move(replay, dir.resolve(fileName(queue.table) + ".failed-" + System.currentTimeMillis()));
+                    }
+                } catch (IOException ex) {
+                    logger.error("保留溢写文件失败: {}", replay, ex);
+                }
+            }
+        }
+    }
+
+    private void replay(TableQueue queue, Path file) throws IOException {
+        int flushSize = flushSize();
+        List<Map<String, Object>> batch = new ArrayList<>(flushSize);
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                batch.add(objectMapper.readValue(line, new TypeReference<Map<String, Object>>() {}));
+                if (batch.size() >= flushSize) {
+                    replayBatch(queue, batch);
+                }
+            }
+        }
+        replayBatch(queue, batch);
+    }
+
+    private void replayBatch(TableQueue queue, List<Map<String, Object>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        baseService.insertPrepared(queue.table, batch);
+        queue.replayed.addAndGet(batch.size());
+        logger.debug("表[{}]回放溢写数据 {} 行", queue.table, batch.size());
+        batch.clear();
+    }
+
+    /**
+     * 溢写前把日期时间转换为数据库可直接接受的字符串，回放时无需再按列类型还原
+     */
+    private Map<String, Object> toSpillable(Map<String, Object> row) {
+        Map<String, Object> copy = new LinkedHashMap<>(row);
+        for (Map.Entry<String, Object> entry : copy.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Date) {
+                entry.setValue(new Timestamp(((Date) value).getTime()).toString());
+            } else if (value instanceof TemporalAccessor) {
+                entry.setValue(value.toString());
+            }
+        }
+        return copy;
+    }
+
+    private TableQueue queue(String table) {
+        return queues.computeIfAbsent(table,
+                t -> new TableQueue(t, appProperties.getWriteBehind().getQueueCapacity()));
+    }
+
+    private int flushSize() {
+        return Math.max(1, appProperties.getWriteBehind().getFlushSize());
+    }
+
+    private Path spillDir() {
+        return Paths.get(appProperties.getWriteBehind().getSpillDir());
+    }
+
+    private static String fileName(String table) {
+        return table.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+
+    /**
+     * 单表的队列与计数
+     */
+    private static final class TableQueue {
+
+        private final String table;
+        private final MpscRingBuffer<Map<String, Object>> buffer;
+        private final AtomicLong enqueued = new AtomicLong();
+        private final AtomicLong flushed = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong spilled = new AtomicLong();
+        private final AtomicLong replayed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        /** 存在待回放的溢写文件 */
+        private volatile boolean spillPending;
+
+        private TableQueue(String table, int capacity) {
+            this.table = table;
+            this.buffer = new MpscRingBuffer<>(capacity);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.ycbd.demo.service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ycbd.demo.security.UserContext;
+import com.ycbd.demo.utils.Tools;
+
+import cn.hutool.core.util.StrUtil;
+
+/**
+ * 按（表，插入/更新）编译的写入预处理计划。
+ *
+ * 由元数据快照一次性生成固定的字段处理器数组：字段存在性、必填校验、用户上下文填充、默认值、审计字段，
+ * 默认值表达式预先解析。每行只遍历一次行数据（移除无效字段、就地转换 MyBatis 不支持的值）
+ * 和一次处理器数组，不复制行。
+ *
+ * 处理规则与原逐行预处理一致：传入的非空值优先，其次用户上下文，再次默认值；审计字段只在为空时填充，
+ * 更新时跳过仅插入时填充的审计字段。
+ */
+public final class WritePlan {
+
+    private static final Logger logger = LoggerFactory.getLogger(WritePlan.class);
+
+    private final String table;
+    private final long version;
+    /** 列属性表中定义的字段、标准审计字段及 id */
+    private final Set<String> allowedFields;
+    private final FieldHandler[] handlers;
+    /** 已告警过的无效字段，避免批量写入时逐行输出相同告警 */
+    private final Set<String> warnedFields = ConcurrentHashMap.newKeySet();
+
+    WritePlan(TableMetadata metadata, boolean update, Set<String> standardFields, Set<String> auditFields,
+            Set<String> insertOnlyAuditFields) {
+        this.table = metadata.getTable();
+        this.version = metadata.getVersion();
+
+        Set<String> allowed = new HashSet<>(standardFields);
+        allowed.add("id");
+        List<FieldHandler> list = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (TableMetadata.Column column : metadata.getColumns()) {
+            String name = column.getName();
+            allowed.add(name);
+            if (!seen.add(name)) {
+                continue;
+            }
+            boolean audit = auditFields.contains(name);
+            DefaultValue defaultValue = DefaultValue.of(column.getDefaultValue());
+            // 有默认值或审计字段的必填项总能自动填充，无需在运行时校验
+            boolean strictRequired = column.isRequired() && defaultValue == null && !audit;
+            AuditSource source = null;
+            if (audit && !(update && insertOnlyAuditFields.contains(name))) {
+                source = AuditSource.of(name);
+            }
+            list.add(new FieldHandler(name, strictRequired, audit, defaultValue, source));
+        }
+        this.allowedFields = Collections.unmodifiableSet(allowed);
+        this.handlers = list.toArray(new FieldHandler[0]);
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * 读取当前用户上下文与时间戳，批量写入时整批共用一份
+     */
+    public Stamp stamp() {
+        return new Stamp(UserContext.getUser());
+    }
+
+    /**
+     * 预处理单行
+     */
+    public void apply(Map<String, Object> data) {
+        apply(data, stamp());
+    }
+
+    /**
+     * 使用给定的上下文预处理一行：移除无效字段、就地转换取值，再执行字段处理器
+     */
+    public void apply(Map<String, Object> data, Stamp stamp) {
+        List<String> invalid = null;
+        for (Iterator<Map.Entry<String, Object>> it = data.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Object> entry = it.next();
+            if (!allowedFields.contains(entry.getKey())) {
+                if (invalid == null) {
+                    invalid = new ArrayList<>();
+                }
+                invalid.add(entry.getKey());
+                it.remove();
+                continue;
+            }
+            Object value = entry.getValue();
+            Object converted = Tools.toMyBatisValue(value);
+            if (converted != value) {
+                entry.setValue(converted);
+            }
+        }
+        if (invalid != null) {
+            warnInvalid(invalid);
+        }
+
+        Map<String, Object> userContext = stamp.userContext;
+        for (FieldHandler handler : handlers) {
+            if (isNotEmpty(data.get(handler.name))) {
+                continue;
+            }
+            Object contextValue = userContext != null ? userContext.get(handler.name) : null;
+            if (handler.strictRequired && isEmpty(contextValue)) {
+                throw new IllegalArgumentException("字段 [" + handler.name + "] 为必填项，不能为空");
+            }
+            if (handler.audit) {
+                // 审计字段只在有登录用户时填充
+                if (handler.auditSource != null && userContext != null) {
+                    Object value = stamp.value(handler.auditSource);
+                    if (value != null) {
+                        data.put(handler.name, value);
+                    }
+                }
+                continue;
+            }
+            if (isNotEmpty(contextValue)) {
+                data.put(handler.name, contextValue);
+            } else if (handler.defaultValue != null) {
+                Object value = handler.defaultValue.get();
+                if (value != null) {
+                    data.put(handler.name, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * 只填充审计字段（部分更新使用）
+     */
+    public void stampAudit(Map<String, Object> data, Stamp stamp) {
+        if (stamp.userContext == null) {
+            return;
+        }
+        for (FieldHandler handler : handlers) {
+            if (handler.auditSource == null || isNotEmpty(data.get(handler.name))) {
+                continue;
+            }
+            Object value = stamp.value(handler.auditSource);
+            if (value != null) {
+                data.put(handler.name, value);
+            }
+        }
+    }
+
+    private void warnInvalid(List<String> invalid) {
+        Set<String> fresh = new LinkedHashSet<>();
+        for (String field : invalid) {
+            if (warnedFields.add(field)) {
+                fresh.add(field);
+            }
+        }
+        if (!fresh.isEmpty()) {
+            logger.warn("表[{}]中发现无效字段: {}，这些字段将被忽略", table, fresh);
+        } else {
+            logger.debug("表[{}]忽略无效字段: {}", table, invalid);
+        }
+    }
+
+    static boolean isEmpty(Object value) {
+        if (value == null) {
+            return true;
+        }
+        if (value instanceof String) {
+            return StrUtil.isBlank((String) value);
+        }
+        return false;
+    }
+
+    static boolean isNotEmpty(Object value) {
+        return !isEmpty(value);
+    }
+
+    /**
+     * 一次写入（单行或整批）共用的上下文：当前用户与时间戳
+     */
+    public static final class Stamp {
+
+        private final Map<String, Object> userContext;
+        private final Timestamp now = new Timestamp(System.currentTimeMillis());
+        private Map<AuditSource, Object> values;
+
+        private Stamp(Map<String, Object> userContext) {
+            this.userContext = userContext;
+        }
+
+        /**
+         * 读取 Stamp 时的用户上下文，可能为null
+         */
+        Map<String, Object> getUserContext() {
+            return userContext;
+        }
+
+        private Object value(AuditSource source) {
+            if (values == null) {
+                values = new HashMap<>();
+                values.put(AuditSource.USER_ID, UserContext.getUserId());
+                values.put(AuditSource.NOW, now);
+                values.put(AuditSource.USERNAME, UserContext.getUserName());
+                values.put(AuditSource.TENANT_ID, userContext.get("tenantId"));
+            }
+            return values.get(source);
+        }
+    }
+
+    /**
+     * 审计字段的取值来源
+     */
+    private enum AuditSource {
+        USER_ID, NOW, USERNAME, TENANT_ID;
+
+        static AuditSource of(String field) {
+            switch (field) {
+                case "create_by":
+                case "update_by":
+                    return USER_ID;
+                case "created_at":
+                case "created_time":
+                case "create_time":
+                case "updated_at":
+                case "updated_time":
+                case "update_time":
+                    return NOW;
+                case "creator":
+                case "updater":
+                    return USERNAME;
+                case "tenant_id":
+                    return TENANT_ID;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * 预解析的默认值表达式：now()、uuid()、userId()、username()、orgId()、整数或字符串常量
+     */
+    abstract static class DefaultValue {
+
+        abstract Object get();
+
+        static DefaultValue of(String expression) {
+            if (expression == null) {
+                return null;
+            }
+            if ("now()".equalsIgnoreCase(expression)) {
+                return supplier(() -> new Timestamp(System.currentTimeMillis()));
+            }
+            if ("uuid()".equalsIgnoreCase(expression)) {
+                return supplier(() -> UUID.randomUUID().toString());
+            }
+            if ("userId()".equalsIgnoreCase(expression)) {
+                return supplier(UserContext::getUserId);
+            }
+            if ("username()".equalsIgnoreCase(expression)) {
+                return supplier(UserContext::getUserName);
+            }
+            if ("orgId()".equalsIgnoreCase(expression)) {
+                return supplier(UserContext::getOrgId);
+            }
+            return constant(parseConstant(expression));
+        }
+
+        private static Object parseConstant(String expression) {
+            // 纯数字按 Integer 处理，超出范围时保留原字符串
+            if (!expression.isEmpty() && StrUtil.isNumeric(expression)) {
+                try {
+                    return Integer.parseInt(expression);
+                } catch (NumberFormatException e) {
+                    return expression;
+                }
+            }
+            return expression;
+        }
+
+        private static DefaultValue constant(Object value) {
+            return new DefaultValue() {
+                @Override
+                Object get() {
+                    return value;
+                }
+            };
+        }
+
+        private static DefaultValue supplier(Supplier<Object> supplier) {
+            return new DefaultValue() {
+                @Override
+                Object get() {
+                    return supplier.get();
+                }
+            };
+        }
+    }
+
+    private static final class FieldHandler {
+
+        private final String name;
+        private final boolean strictRequired;
+        private final boolean audit;
+        private final DefaultValue defaultValue;
+        private final AuditSource auditSource;
+
+        private FieldHandler(String name, boolean strictRequired, boolean audit, DefaultValue defaultValue,
+                AuditSource auditSource) {
+            this.name = name;
+            this.strictRequired = strictRequired;
+            this.audit = audit;
+            this.defaultValue = defaultValue;
+            this.auditSource = auditSource;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.ycbd.demo.utils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 紧凑行：同一结果集的所有行共享一份小写列名索引（{@link Schema}），每行只保存一个取值数组。
+ *
+ * 通过 Map 接口对外暴露，可直接替代 HashMap 使用；写入 Schema 之外的新 key 时存入行内的溢出 Map。
+ * 不是线程安全的，与 HashMap 一致。
+ */
+public final class CompactRow extends AbstractMap<String, Object> {
+
+    /** 数组中表示“该列不存在”的占位值（MyBatis 默认不返回值为 NULL 的列） */
+    private static final Object ABSENT = new Object();
+
+    private final Schema schema;
+    private final Object[] values;
+    private Map<String, Object> overflow;
+    private Set<Map.Entry<String, Object>> entrySet;
+
+    CompactRow(Schema schema, Object[] values) {
+        this.schema = schema;
+        this.values = values;
+    }
+
+    /**
+     * 复制一行（共享 Schema，复制取值数组与溢出 Map）
+     */
+    public CompactRow copy() {
+        CompactRow copy = new CompactRow(schema, values.clone());
+        if (overflow != null) {
+            copy.overflow = new LinkedHashMap<>(overflow);
+        }
+        return copy;
+    }
+
+    private int slot(Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        Integer idx = schema.index.get(key);
+        return idx != null && idx < values.length ? idx : -1;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int i = slot(key);
+        if (i >= 0) {
+            Object v = values[i];
+            return v == ABSENT ? null : v;
+        }
+        return overflow != null ? overflow.get(key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int i = slot(key);
+        if (i >= 0) {
+            return values[i] != ABSENT;
+        }
+        return overflow != null && overflow.containsKey(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int i = slot(key);
+        if (i >= 0) {
+            Object old = values[i];
+            values[i] = value;
+            return old == ABSENT ? null : old;
+        }
+        if (overflow == null) {
+            overflow = new LinkedHashMap<>();
+        }
+        return overflow.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int i = slot(key);
+        if (i >= 0) {
+            Object old = values[i];
+            values[i] = ABSENT;
+            return old == ABSENT ? null : old;
+        }
+        return overflow != null ? overflow.remove(key) : null;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Object v : values) {
+            if (v != ABSENT) {
+                size++;
+            }
+        }
+        return overflow != null ? size + overflow.size() : size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, ABSENT);
+        overflow = null;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return CompactRow.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+
+        private int next = advance(0);
+        private int last = -1;
+        private Iterator<Map.Entry<String, Object>> overflowIt;
+
+        private int advance(int from) {
+            int i = from;
+            while (i < values.length && values[i] == ABSENT) {
+                i++;
+            }
+            return i;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next < values.length) {
+                return true;
+            }
+            if (overflowIt == null && overflow != null) {
+                overflowIt = overflow.entrySet().iterator();
+            }
+            return overflowIt != null && overflowIt.hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (next < values.length) {
+                final int i = next;
+                last = i;
+                next = advance(i + 1);
+                return new Map.Entry<String, Object>() {
+                    @Override
+                    public String getKey() {
+                        return schema.names.get(i);
+                    }
+
+                    @Override
+                    public Object getValue() {
+                        Object v = values[i];
+                        return v == ABSENT ? null : v;
+                    }
+
+                    @Override
+                    public Object setValue(Object value) {
+                        Object old = getValue();
+                        values[i] = value;
+                        return old;
+                    }
+
+                    @Override
+                    public boolean equals(Object o) {
+                        if (!(o instanceof Map.Entry)) {
+                            return false;
+                        }
+                        Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+                        return getKey().equals(e.getKey()) && java.util.Objects.equals(getValue(), e.getValue());
+                    }
+
+                    @Override
+                    public int hashCode() {
+                        return getKey().hashCode() ^ java.util.Objects.hashCode(getValue());
+                    }
+
+                    @Override
+                    public String toString() {
+                        return getKey() + "=" + getValue();
+                    }
+                };
+            }
+            if (hasNext()) {
+                last = -1;
+                return overflowIt.next();
+            }
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        public void remove() {
+            if (last >= 0) {
+                values[last] = ABSENT;
+                last = -1;
+            } else if (overflowIt != null) {
+                overflowIt.remove();
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    /**
+     * 结果集级共享的列名索引（小写）。只在收集结果时追加列，行返回给调用方后不再变化。
+     */
+    public static final class Schema {
+
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> index = new HashMap<>();
+        /** 原始列名 -> 下标，避免每个单元格都做一次 toLowerCase */
+        private final Map<String, Integer> rawIndex = new HashMap<>();
+
+        /**
+         * 获取原始列名对应的下标，不存在时追加
+         */
+        int indexOf(String rawName) {
+            Integer idx = rawIndex.get(rawName);
+            if (idx == null) {
+                String name = rawName.toLowerCase();
+                idx = index.get(name);
+                if (idx == null) {
+                    idx = names.size();
+                    names.add(name);
+                    index.put(name, idx);
+                }
+                rawIndex.put(rawName, idx);
+            }
+            return idx;
+        }
+
+        int size() {
+            return names.size();
+        }
+
+        /**
+         * 按 Schema 创建一行，MyBatis 返回的原始行中的列按小写名写入
+         */
+        CompactRow newRow(Map<String, Object> raw) {
+            for (String key : raw.keySet()) {
+                indexOf(key);
+            }
+            Object[] values = new Object[names.size()];
+            Arrays.fill(values, ABSENT);
+            for (Map.Entry<String, Object> entry : raw.entrySet()) {
+                values[rawIndex.get(entry.getKey())] = entry.getValue();
+            }
+            return new CompactRow(this, values);
+        }
+    }
+}
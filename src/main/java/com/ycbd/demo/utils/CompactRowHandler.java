@@ -0,0 +1,34 @@
+package com.ycbd.demo.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+
+/**
+ * 将 MyBatis 返回的 Map 行直接转换为共享 Schema 的 {@link CompactRow}，
+ * 原始行在回调结束后即可回收，无需再做一次小写 key 复制。
+ */
+public class CompactRowHandler implements ResultHandler<Map<String, Object>> {
+
+    /** 预分配容量上限，避免超大 pageSize 一次性分配过大数组 */
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private final CompactRow.Schema schema = new CompactRow.Schema();
+    private final List<Map<String, Object>> rows;
+
+    public CompactRowHandler(int expectedSize) {
+        this.rows = new ArrayList<>(Math.min(Math.max(expectedSize, 0), MAX_INITIAL_CAPACITY));
+    }
+
+    @Override
+    public void handleResult(ResultContext<? extends Map<String, Object>> context) {
+        rows.add(schema.newRow(context.getResultObject()));
+    }
+
+    public List<Map<String, Object>> getRows() {
+        return rows;
+    }
+}
@@ -0,0 +1,116 @@
+package com.ycbd.demo.utils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界无锁环形队列：多生产者、单消费者。
+ *
+ * 每个槽位带序号（Vyukov 有界队列）：生产者 CAS 抢占写位置后写入元素并发布序号，
+ * 消费者按序号判断槽位是否就绪，取出后把序号推进一圈释放槽位。队列满时 offer 立即返回 false，由调用方决定阻塞、丢弃或溢写。
+ *
+ * poll/drain 只能由同一个消费者线程调用。
+ */
+public final class MpscRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences;
+    /** 下一个写位置（生产者竞争） */
+    private final AtomicLong tail = new AtomicLong();
+    /** 下一个读位置（仅消费者写入，volatile 供 size 读取） */
+    private volatile long head;
+
+    /**
+     * @param capacity 容量，向上取整为 2 的幂
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity < 2) {
+            capacity = 2;
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * 入队，队列满时返回 false
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        long pos = tail.get();
+        for (;;) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer.lazySet(index, element);
+                    // 发布：消费者看到序号后才读取元素
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                // 槽位尚未被消费者释放：队列已满
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * 出队，队列为空（或队首元素尚未发布完成）时返回 null
+     */
+    public E poll() {
+        long pos = head;
+        int index = (int) pos & mask;
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+        E element = buffer.get(index);
+        buffer.lazySet(index, null);
+        sequences.set(index, pos + mask + 1);
+        head = pos + 1;
+        return element;
+    }
+
+    /**
+     * 批量出队到 target
+     *
+     * @return 取出的元素个数
+     */
+    public int drain(List<E> target, int limit) {
+        int count = 0;
+        E element;
+        while (count < limit && (element = poll()) != null) {
+            target.add(element);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 当前元素个数（近似值）
+     */
+    public int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -1,6 +1,9 @@
 package com.ycbd.demo.utils;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -13,6 +16,10 @@ import cn.hutool.core.util.StrUtil;
  * SqlWhereBuilder 类用于构建 SQL WHERE 子句。 该类提供了一系列静态方法，用于根据给定的参数和属性列表生成 SQL 查询条件。
  * 它支持多种查询类型，包括等于、范围、模糊匹配、IN 查询等。
  *
+ * 提供两种输出方式：{@link #build} 将值作为转义后的字面量直接拼入 SQL；
+ * {@link #compile} 生成带 ? 占位符的 SQL 与按顺序排列的绑定值，SQL 文本只取决于查询结构，
+ * 便于驱动和数据库复用预编译语句与执行计划。
+ *
  * @author ycbd
  * @version 1.0
  * @since [Date]
@@ -20,7 +27,7 @@ import cn.hutool.core.util.StrUtil;
 public class SqlWhereBuilder {
 
     /**
-     * 构建 SQL WHERE 子句。
+     * 构建 SQL WHERE 子句（字面量模式）。
      *
      * @param table 表名
      * @param paraMap 参数映射，包含字段名和对应的值
@@ -29,7 +36,27 @@ public class SqlWhereBuilder {
      * @return 构建好的 SQL WHERE 子句
      */
     public static StringBuilder build(String table, Map<String, Object> paraMap, List<Map<String, Object>> attributeList, boolean isExactMatch) {
-        StringBuilder sqlBuilder = new StringBuilder();
+        return render(table, paraMap, attributeList, isExactMatch, false).sql;
+    }
+
+    /**
+     * 编译 SQL WHERE 子句（绑定变量模式）。参数与 {@link #build} 相同，
+     * 返回的 SQL 中所有值均以 ? 占位，值按出现顺序保存在绑定列表中。
+     *
+     * @param table 表名
+     * @param paraMap 参数映射，包含字段名和对应的值
+     * @param attributeList 属性列表，包含每个字段的查询类型和列类型
+     * @param isExactMatch 是否使用精确匹配（AND）连接条件，false 则使用 OR
+     * @return 编译结果
+     */
+    public static Compiled compile(String table, Map<String, Object> paraMap, List<Map<String, Object>> attributeList, boolean isExactMatch) {
+        Context ctx = render(table, paraMap, attributeList, isExactMatch, true);
+        return new Compiled(ctx.sql.toString(), ctx.params, ctx.placeholders);
+    }
+
+    private static Context render(String table, Map<String, Object> paraMap, List<Map<String, Object>> attributeList,
+            boolean isExactMatch, boolean parameterized) {
+        Context ctx = new Context(parameterized);
         String logicalOperator = isExactMatch ? " AND " : " OR ";
 
         for (Map.Entry<String, Object> paraEntry : paraMap.entrySet()) {
@@ -47,8 +74,8 @@ public class SqlWhereBuilder {
 
             if (attributeOpt.isPresent()) {
                 Map<String, Object> attribute = attributeOpt.get();
-                if (sqlBuilder.length() > 0) {
-                    sqlBuilder.append(logicalOperator);
+                if (ctx.sql.length() > 0) {
+                    ctx.sql.append(logicalOperator);
                 }
 
                 // 优化：如果key包含点（如ur.user_id），直接用key，否则拼接table名
@@ -61,53 +88,132 @@ public class SqlWhereBuilder {
                 String queryType = MapUtil.getStr(attribute, "queryType", "eq");
                 int columnType = MapUtil.getInt(attribute, "columnType", 1); // 默认为字符串类型
 
-                String condition = buildCondition(columnName, value, queryType, columnType);
-                if (StrUtil.isNotEmpty(condition)) {
-                    sqlBuilder.append(condition);
+                appendCondition(ctx, columnName, value, resolveRule(queryType), columnType);
+            }
+        }
+
+        return ctx;
+    }
+
+    /**
+     * 按预编译的条件模板编译 WHERE 子句（绑定变量模式），只需代入取值。
+     * 值为空的条件会被跳过。
+     *
+     * @param conditions 条件模板
+     * @param values 与条件一一对应的取值
+     * @param isExactMatch 是否使用精确匹配（AND）连接条件，false 则使用 OR
+     * @return 编译结果
+     */
+    public static Compiled compile(List<Condition> conditions, List<String> values, boolean isExactMatch) {
+        Context ctx = new Context(true);
+        String logicalOperator = isExactMatch ? " AND " : " OR ";
+        for (int i = 0; i < conditions.size(); i++) {
+            String value = values.get(i);
+            if (StrUtil.isEmpty(value)) {
+                continue;
+            }
+            if (ctx.sql.length() > 0) {
+                ctx.sql.append(logicalOperator);
+            }
+            Condition condition = conditions.get(i);
+            appendCondition(ctx, condition.columnName, value, condition.rule, condition.columnType);
+        }
+        return new Compiled(ctx.sql.toString(), ctx.params, ctx.placeholders);
+    }
+
+    /**
+     * 构建键集分页（seek）谓词：取排序键严格位于游标之后的行，按展开的 OR 形式生成，
+     * 即 (k1 > v1) OR (k1 = v1 AND k2 > v2) OR ...，降序列使用 &lt;。
+     * 空值按 MySQL/H2 默认规则处理：升序时 NULL 在最前，降序时 NULL 在最后。
+     *
+     * @param columns 排序列（已限定表名），最后一列应为主键以保证唯一
+     * @param descending 各列是否降序
+     * @param values 游标中各列的取值
+     * @return 编译结果；游标之后不可能再有数据时为恒假条件
+     */
+    public static Compiled seek(List<String> columns, List<Boolean> descending, List<Object> values) {
+        Context ctx = new Context(true);
+        StringBuilder sql = ctx.sql;
+        boolean first = true;
+        for (int i = 0; i < columns.size(); i++) {
+            boolean desc = descending.get(i);
+            Object value = values.get(i);
+            if (desc && value == null) {
+                // 降序时 NULL 已在最后，该列上不存在“之后”的值
+                continue;
+            }
+            sql.append(first ? "(" : " OR (");
+            first = false;
+            for (int j = 0; j < i; j++) {
+                if (values.get(j) == null) {
+                    sql.append(columns.get(j)).append(" IS NULL");
+                } else {
+                    sql.append(columns.get(j)).append(" = ");
+                    ctx.placeholder(values.get(j));
                 }
+                sql.append(" AND ");
+            }
+            String column = columns.get(i);
+            if (value == null) {
+                sql.append(column).append(" IS NOT NULL");
+            } else if (desc) {
+                sql.append('(').append(column).append(" < ");
+                ctx.placeholder(value);
+                sql.append(" OR ").append(column).append(" IS NULL)");
+            } else {
+                sql.append(column).append(" > ");
+                ctx.placeholder(value);
             }
+            sql.append(')');
         }
+        if (first) {
+            sql.append("1 = 0");
+        }
+        return new Compiled(sql.toString(), ctx.params, ctx.placeholders);
+    }
 
-        return sqlBuilder;
+    /**
+     * 将查询类型解析为规则，无法识别时按等于处理
+     */
+    private static QueryRuleEnum resolveRule(String queryType) {
+        QueryRuleEnum comparison = QueryRuleEnum.getByValue(queryType.toLowerCase());
+        // 默认使用等于查询
+        return comparison != null ? comparison : QueryRuleEnum.EQ;
     }
 
     /**
      * 根据查询类型构建单个条件。
      *
+     * @param ctx 输出上下文
      * @param columnName 列名
      * @param value 值
-     * @param queryType 查询类型
+     * @param comparison 查询规则
      * @param columnType 列类型
-     * @return 构建好的单个条件字符串
      */
-    private static String buildCondition(String columnName, String value, String queryType, int columnType) {
+    private static void appendCondition(Context ctx, String columnName, String value, QueryRuleEnum comparison, int columnType) {
         if (StrUtil.isEmpty(value)) {
-            return "";
-        }
-
-        QueryRuleEnum comparison = QueryRuleEnum.getByValue(queryType.toLowerCase());
-        if (comparison == null) {
-            // 默认使用等于查询
-            comparison = QueryRuleEnum.EQ;
+            return;
         }
 
-        StringBuilder condition = new StringBuilder();
+        StringBuilder condition = ctx.sql;
 
         switch (comparison) {
             case RANGE:
-                condition.append(buildRangeCondition(columnName, value, columnType));
+                appendRangeCondition(ctx, columnName, value, columnType);
                 break;
             case LIKE:
-                condition.append(buildLikeCondition(columnName, value));
+                appendLikeCondition(ctx, columnName, value);
                 break;
             case LEFT_LIKE:
-                condition.append(columnName).append(" LIKE ").append("'%").append(escapeValue(value)).append("'");
+                condition.append(columnName).append(" LIKE ");
+                ctx.like("%", value, "");
                 break;
             case RIGHT_LIKE:
-                condition.append(columnName).append(" LIKE ").append("'").append(escapeValue(value)).append("%'");
+                condition.append(columnName).append(" LIKE ");
+                ctx.like("", value, "%");
                 break;
             case IN:
-                condition.append(buildInCondition(columnName, value, columnType));
+                appendInCondition(ctx, columnName, value, columnType);
                 break;
             case GT:
             case GE:
@@ -116,7 +222,7 @@ public class SqlWhereBuilder {
             case EQ:
             case NE:
                 condition.append(columnName).append(comparison.getValue());
-                condition.append(formatValue(value, columnType));
+                ctx.value(value, columnType);
                 break;
             case SQL_RULES:
                 // 自定义SQL片段，直接使用
@@ -124,23 +230,21 @@ public class SqlWhereBuilder {
                 break;
             default:
                 condition.append(columnName).append(" = ");
-                condition.append(formatValue(value, columnType));
+                ctx.value(value, columnType);
         }
-
-        return condition.toString();
     }
 
     /**
      * 构建范围查询条件。
      *
+     * @param ctx 输出上下文
      * @param columnName 列名
      * @param value 范围值，格式为 "start~end" 或 "start至end"
      * @param columnType 列类型
-     * @return 构建好的范围查询条件
      */
-    private static String buildRangeCondition(String columnName, String value, int columnType) {
+    private static void appendRangeCondition(Context ctx, String columnName, String value, int columnType) {
         if (StrUtil.isEmpty(value)) {
-            return "";
+            return;
         }
 
         String[] parts;
@@ -152,51 +256,58 @@ public class SqlWhereBuilder {
             parts = value.split(",", 2);
         } else {
             // 单值处理为大于等于
-            return columnName + " >= " + formatValue(value.trim(), columnType);
+            ctx.sql.append(columnName).append(" >= ");
+            ctx.value(value.trim(), columnType);
+            return;
         }
 
         String start = parts[0].trim();
         String end = parts.length > 1 ? parts[1].trim() : "";
 
         if (!start.isEmpty() && !end.isEmpty()) {
-            return columnName + " BETWEEN " + formatValue(start, columnType) + " AND " + formatValue(end, columnType);
+            ctx.sql.append(columnName).append(" BETWEEN ");
+            ctx.value(start, columnType);
+            ctx.sql.append(" AND ");
+            ctx.value(end, columnType);
         } else if (!start.isEmpty()) {
-            return columnName + " >= " + formatValue(start, columnType);
+            ctx.sql.append(columnName).append(" >= ");
+            ctx.value(start, columnType);
         } else if (!end.isEmpty()) {
-            return columnName + " <= " + formatValue(end, columnType);
+            ctx.sql.append(columnName).append(" <= ");
+            ctx.value(end, columnType);
         }
-        return "";
     }
 
     /**
      * 构建模糊查询条件。
      *
+     * @param ctx 输出上下文
      * @param columnName 列名
      * @param value 查询值
-     * @return 构建好的模糊查询条件
      */
-    private static String buildLikeCondition(String columnName, String value) {
+    private static void appendLikeCondition(Context ctx, String columnName, String value) {
         if (StrUtil.isEmpty(value)) {
-            return "";
+            return;
         }
 
         if (value.contains(",")) {
-            return buildMultiLikeCondition(columnName, value);
+            appendMultiLikeCondition(ctx, columnName, value);
         } else {
-            return columnName + " LIKE '%" + escapeValue(value) + "%'";
+            ctx.sql.append(columnName).append(" LIKE ");
+            ctx.like("%", value, "%");
         }
     }
 
     /**
      * 构建多值模糊查询条件（OR连接）。
      *
+     * @param ctx 输出上下文
      * @param columnName 列名
      * @param value 逗号分隔的多个值
-     * @return 构建好的多值模糊查询条件
      */
-    private static String buildMultiLikeCondition(String columnName, String value) {
+    private static void appendMultiLikeCondition(Context ctx, String columnName, String value) {
         String[] values = value.split(",");
-        StringBuilder sb = new StringBuilder("(");
+        StringBuilder sb = ctx.sql.append("(");
 
         for (int i = 0; i < values.length; i++) {
             String trimmedValue = values[i].trim();
@@ -207,24 +318,24 @@ public class SqlWhereBuilder {
             if (i > 0) {
                 sb.append(" OR ");
             }
-            sb.append(columnName).append(" LIKE '%").append(escapeValue(trimmedValue)).append("%'");
+            sb.append(columnName).append(" LIKE ");
+            ctx.like("%", trimmedValue, "%");
         }
 
         sb.append(")");
-        return sb.toString();
     }
 
     /**
      * 构建 IN 查询条件。
      *
+     * @param ctx 输出上下文
      * @param columnName 列名
      * @param value 逗号分隔的多个值
      * @param columnType 列类型
-     * @return 构建好的 IN 查询条件
      */
-    private static String buildInCondition(String columnName, String value, int columnType) {
+    private static void appendInCondition(Context ctx, String columnName, String value, int columnType) {
         if (StrUtil.isEmpty(value)) {
-            return "";
+            return;
         }
 
         String[] values = value.split(",");
@@ -235,14 +346,17 @@ public class SqlWhereBuilder {
                 .collect(Collectors.toList());
 
         if (validValues.isEmpty()) {
-            return "";
+            return;
         }
 
-        String formattedValues = validValues.stream()
-                .map(v -> formatValue(v, columnType))
-                .collect(Collectors.joining(", "));
-
-        return columnName + " IN (" + formattedValues + ")";
+        ctx.sql.append(columnName).append(" IN (");
+        for (int i = 0; i < validValues.size(); i++) {
+            if (i > 0) {
+                ctx.sql.append(", ");
+            }
+            ctx.value(validValues.get(i), columnType);
+        }
+        ctx.sql.append(")");
     }
 
     /**
@@ -279,6 +393,33 @@ public class SqlWhereBuilder {
         return "'" + escapeValue(value) + "'";
     }
 
+    /**
+     * 根据列类型转换绑定值，规则与 {@link #formatValue} 一致：数值/布尔列的纯数字转为数值，
+     * 布尔列的 true/false/yes/no 转为 1/0，其余按字符串绑定。
+     *
+     * @param value 原始值
+     * @param columnType 列类型
+     * @return 绑定值
+     */
+    private static Object bindValue(String value, int columnType) {
+        if (columnType == 2 || columnType == 3) {
+            if (value.matches("-?\\d+")) {
+                return value.length() < 19 ? (Object) Long.valueOf(value) : new BigDecimal(value);
+            }
+            if (value.matches("-?\\d+\\.\\d+")) {
+                return new BigDecimal(value);
+            }
+            if (columnType == 3) {
+                if ("true".equalsIgnoreCase(value) || "yes".equalsIgnoreCase(value)) {
+                    return 1;
+                } else if ("false".equalsIgnoreCase(value) || "no".equalsIgnoreCase(value)) {
+                    return 0;
+                }
+            }
+        }
+        return value;
+    }
+
     /**
      * 转义SQL字符串中的特殊字符
      *
@@ -291,4 +432,179 @@ public class SqlWhereBuilder {
         }
         return value.replace("'", "''");
     }
+
+    /**
+     * 渲染上下文：字面量模式直接写入转义后的值，绑定模式写入 ? 并记录绑定值及占位符位置。
+     */
+    private static final class Context {
+
+        private final boolean parameterized;
+        private final StringBuilder sql = new StringBuilder();
+        private final List<Object> params = new ArrayList<>();
+        private final List<Integer> placeholders = new ArrayList<>();
+
+        private Context(boolean parameterized) {
+            this.parameterized = parameterized;
+        }
+
+        private void value(String value, int columnType) {
+            if (parameterized) {
+                placeholder(bindValue(value, columnType));
+            } else {
+                sql.append(formatValue(value, columnType));
+            }
+        }
+
+        private void like(String prefix, String value, String suffix) {
+            if (parameterized) {
+                placeholder(prefix + value + suffix);
+            } else {
+                sql.append("'").append(prefix).append(escapeValue(value)).append(suffix).append("'");
+            }
+        }
+
+        private void placeholder(Object bind) {
+            placeholders.add(sql.length());
+            sql.append('?');
+            params.add(bind);
+        }
+    }
+
+    /**
+     * 预编译的单个条件模板：已限定表名的列、解析好的查询规则与列类型。
+     */
+    public static final class Condition {
+
+        private final String columnName;
+        private final QueryRuleEnum rule;
+        private final int columnType;
+
+        /**
+         * @param table 表名
+         * @param prop 字段名，包含点（如 ur.user_id）时不再拼接表名
+         * @param queryType 查询类型
+         * @param columnType 列类型
+         */
+        public Condition(String table, String prop, String queryType, int columnType) {
+            this.columnName = prop.contains(".") ? prop : table + "." + prop;
+            this.rule = resolveRule(queryType);
+            this.columnType = columnType;
+        }
+
+        public String getColumnName() {
+            return columnName;
+        }
+
+        public QueryRuleEnum getRule() {
+            return rule;
+        }
+
+        public int getColumnType() {
+            return columnType;
+        }
+    }
+
+    /**
+     * 编译后的 WHERE 子句：带 ? 占位符的 SQL 文本与按顺序排列的绑定值。
+     */
+    public static final class Compiled {
+
+        public static final Compiled EMPTY = new Compiled("", Collections.emptyList(), Collections.emptyList());
+
+        private final String sql;
+        private final List<Object> params;
+        private final int[] placeholders;
+        /** 路由到的物理表（如按时间分桶存储的 system_log 各分桶，按新到旧排列），null 表示直接查询表 */
+        private final List<String> sources;
+
+        Compiled(String sql, List<Object> params, List<Integer> placeholders) {
+            this.sql = sql;
+            this.params = Collections.unmodifiableList(params);
+            this.placeholders = placeholders.stream().mapToInt(Integer::intValue).toArray();
+            this.sources = null;
+        }
+
+        private Compiled(Compiled base, List<String> sources) {
+            this.sql = base.sql;
+            this.params = base.params;
+            this.placeholders = base.placeholders;
+            this.sources = sources;
+        }
+
+        /**
+         * 带 ? 占位符的 SQL 文本
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * 按占位符顺序排列的绑定值
+         */
+        public List<Object> getParams() {
+            return params;
+        }
+
+        public boolean isEmpty() {
+            return sql.isEmpty();
+        }
+
+        public List<String> getSources() {
+            return sources;
+        }
+
+        /**
+         * 指定路由到的物理表，WHERE 子句与绑定值不变
+         */
+        public Compiled withSources(List<String> sources) {
+            return new Compiled(this, sources);
+        }
+
+        /**
+         * 以 AND 合并另一个编译结果，两侧各自加括号，绑定值顺序保持不变
+         */
+        public Compiled and(Compiled other) {
+            if (other == null || other.isEmpty()) {
+                return this;
+            }
+            if (isEmpty()) {
+                return sources != null && other.sources == null ? other.withSources(sources) : other;
+            }
+            String joined = "(" + sql + ") AND (" + other.sql + ")";
+            List<Object> mergedParams = new ArrayList<>(params.size() + other.params.size());
+            mergedParams.addAll(params);
+            mergedParams.addAll(other.params);
+            List<Integer> mergedPlaceholders = new ArrayList<>(placeholders.length + other.placeholders.length);
+            for (int offset : placeholders) {
+                mergedPlaceholders.add(offset + 1);
+            }
+            int shift = sql.length() + 8;
+            for (int offset : other.placeholders) {
+                mergedPlaceholders.add(offset + shift);
+            }
+            Compiled merged = new Compiled(joined, mergedParams, mergedPlaceholders);
+            List<String> mergedSources = sources != null ? sources : other.sources;
+            return mergedSources != null ? merged.withSources(mergedSources) : merged;
+        }
+
+        /**
+         * 转换为 MyBatis 可识别的形式：第 i 个 ? 替换为 #{paramName[i]}，
+         * 仅替换编译时生成的占位符，自定义 SQL 片段中的 ? 保持不变。
+         *
+         * @param paramName Mapper 方法中绑定列表的参数名
+         */
+        public String toMyBatisSql(String paramName) {
+            if (placeholders.length == 0) {
+                return sql;
+            }
+            StringBuilder sb = new StringBuilder(sql.length() + placeholders.length * (paramName.length() + 8));
+            int last = 0;
+            for (int i = 0; i < placeholders.length; i++) {
+                sb.append(sql, last, placeholders[i]).append("#{").append(paramName).append('[').append(i).append("]}");
+                last = placeholders[i] + 1;
+            }
+            sb.append(sql, last, sql.length());
+            return sb.toString();
+        }
+    }
 }
@@ -6,6 +6,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -100,7 +101,7 @@ public class Tools {
             Object value1 = entry.getValue();
 
             // 检查键和值是否都存在于第二个映射中
-            if (map2.containsKey(key) && !map2.get(key).equals(value1)) {
+            if (map2.containsKey(key) && !Objects.equals(map2.get(key), value1)) {
                 differences.put(key, value1 + ":" + map2.get(key));
             }
         }
@@ -158,18 +159,23 @@ public class Tools {
     public static Map<String, Object> processMapForMyBatis(Map<String, Object> data) {
         Map<String, Object> processedData = new HashMap<>();
         for (Map.Entry<String, Object> entry : data.entrySet()) {
-            Object value = entry.getValue();
-            // 如果是复杂对象，转换为字符串
-            if (value != null && (value.getClass().getName().equals("cn.hutool.core.convert.NumberWithFormat")
-                    || value.getClass().isArray() || value instanceof List)) {
-                processedData.put(entry.getKey(), String.valueOf(value));
-            } else {
-                processedData.put(entry.getKey(), value);
-            }
+            processedData.put(entry.getKey(), toMyBatisValue(entry.getValue()));
         }
         return processedData;
     }
 
+    /**
+     * 将单个取值转换为MyBatis可以处理的类型，无需转换时原样返回（写入预处理时就地替换，不复制整行）
+     */
+    public static Object toMyBatisValue(Object value) {
+        // 如果是复杂对象，转换为字符串
+        if (value != null && (value.getClass().getName().equals("cn.hutool.core.convert.NumberWithFormat")
+                || value.getClass().isArray() || value instanceof List)) {
+            return String.valueOf(value);
+        }
+        return value;
+    }
+
     /**
      * 批量处理数据列表，确保所有值都是MyBatis可以处理的类型
      */
@@ -0,0 +1,105 @@
+package com.ycbd.demo.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 有长度上限的字符输出：写满上限后抛出预分配的异常，中止上游（如 JsonGenerator）的序列化，
+ * 超出部分不会被生成。用于日志等只需保留前若干字符的场景，开销不随对象大小增长。
+ */
+public final class TruncatingWriter extends Writer {
+
+    /** 达到上限时抛出，不收集堆栈 */
+    private static final IOException LIMIT_REACHED = new IOException("输出已达到长度上限") {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    };
+
+    private final StringBuilder buffer;
+    private final int limit;
+    private boolean truncated;
+
+    public TruncatingWriter(int limit) {
+        this.limit = Math.max(0, limit);
+        this.buffer = new StringBuilder(Math.min(this.limit, 256));
+    }
+
+    /**
+     * 将对象序列化为 JSON，最多保留 limit 个字符，被截断时末尾追加 "..."
+     *
+     * @return JSON 字符串；序列化失败（非截断原因）时返回 null
+     */
+    public static String writeJson(ObjectMapper objectMapper, Object value, int limit) {
+        TruncatingWriter out = new TruncatingWriter(limit);
+        try {
+            JsonGenerator gen = objectMapper.getFactory().createGenerator(out);
+            // 默认 FLUSH_AFTER_WRITE_VALUE，写完即刷出到 out；截断时生成器直接丢弃，不再 close 触发二次写入
+            objectMapper.writeValue(gen, value);
+        } catch (IOException e) {
+            if (!out.truncated) {
+                return null;
+            }
+        }
+        return out.toString();
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        int room = limit - buffer.length();
+        if (len <= room) {
+            buffer.append(cbuf, off, len);
+            return;
+        }
+        buffer.append(cbuf, off, room);
+        truncated = true;
+        throw LIMIT_REACHED;
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        int room = limit - buffer.length();
+        if (len <= room) {
+            buffer.append(str, off, off + len);
+            return;
+        }
+        buffer.append(str, off, off + room);
+        truncated = true;
+        throw LIMIT_REACHED;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (buffer.length() < limit) {
+            buffer.append((char) c);
+            return;
+        }
+        truncated = true;
+        throw LIMIT_REACHED;
+    }
+
+    @Override
+    public void flush() {
+        // 内容保存在内存中，无需刷出
+    }
+
+    @Override
+    public void close() {
+        // 无需释放资源
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @Override
+    public String toString() {
+        return truncated ? buffer + "..." : buffer.toString();
+    }
+}
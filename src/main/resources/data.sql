@@ -104,6 +104,14 @@ INSERT INTO table_attribute (db_table, table_name, main_key, sort, module, group
 INSERT INTO table_attribute (db_table, table_name, main_key, sort, module, group_by, is_loading, is_all_select, is_row_operation_flag, is_operation_flag) VALUES
 ('system_log', '系统日志', 'id', 'created_at DESC', 'system', NULL, 0, 0, 0, 0);
 
+-- system_log_aggregate 表属性配置
+INSERT INTO table_attribute (db_table, table_name, main_key, sort, module, group_by, is_loading, is_all_select, is_row_operation_flag, is_operation_flag) VALUES
+('system_log_aggregate', '操作日志汇总', 'id', 'window_start DESC', 'system', NULL, 0, 0, 0, 0);
+
+-- system_log_hourly 表属性配置
+INSERT INTO table_attribute (db_table, table_name, main_key, sort, module, group_by, is_loading, is_all_select, is_row_operation_flag, is_operation_flag) VALUES
+('system_log_hourly', '操作日志小时汇总', 'id', 'hour_start DESC', 'system', NULL, 0, 0, 0, 0);
+
 -- =====================================================================
 -- 字段属性配置 (column_attribute)
 -- =====================================================================
@@ -233,7 +241,7 @@ INSERT INTO column_attribute (db_table_name, column_name, page_name, is_show_in_
 
 -- system_log 表字段属性配置
 INSERT INTO column_attribute (db_table_name, column_name, page_name, is_show_in_list, search_flag, edit_flag, is_required, order_no, field_type, field_num_type) VALUES
-('system_log', 'id', 'ID', FALSE, FALSE, FALSE, FALSE, 1, 'int', 2),
+('system_log', 'id', 'ID', FALSE, FALSE, FALSE, FALSE, 1, 'bigint', 2),
 ('system_log', 'user_id', '用户ID', TRUE, TRUE, FALSE, FALSE, 2, 'int', 2),
 ('system_log', 'username', '用户名', TRUE, TRUE, FALSE, FALSE, 3, 'varchar', 1),
 ('system_log', 'method', '请求方法', TRUE, TRUE, FALSE, FALSE, 4, 'varchar', 1),
@@ -245,6 +253,33 @@ INSERT INTO column_attribute (db_table_name, column_name, page_name, is_show_in_
 ('system_log', 'duration_ms', '执行时间(毫秒)', TRUE, TRUE, FALSE, FALSE, 10, 'bigint', 2),
 ('system_log', 'created_at', '创建时间', TRUE, TRUE, FALSE, FALSE, 11, 'timestamp', 4);
 
+-- system_log_aggregate 表字段属性配置
+INSERT INTO column_attribute (db_table_name, column_name, page_name, is_show_in_list, search_flag, edit_flag, is_required, order_no, field_type, field_num_type) VALUES
+('system_log_aggregate', 'id', 'ID', FALSE, FALSE, FALSE, FALSE, 1, 'int', 2),
+('system_log_aggregate', 'method', '请求方法', TRUE, TRUE, FALSE, FALSE, 2, 'varchar', 1),
+('system_log_aggregate', 'request_uri', '请求URI', TRUE, TRUE, FALSE, FALSE, 3, 'varchar', 1),
+('system_log_aggregate', 'window_start', '统计开始时间', TRUE, TRUE, FALSE, FALSE, 4, 'timestamp', 4),
+('system_log_aggregate', 'window_end', '统计结束时间', TRUE, TRUE, FALSE, FALSE, 5, 'timestamp', 4),
+('system_log_aggregate', 'request_count', '请求数', TRUE, FALSE, FALSE, FALSE, 6, 'bigint', 2),
+('system_log_aggregate', 'error_count', '失败数', TRUE, FALSE, FALSE, FALSE, 7, 'bigint', 2),
+('system_log_aggregate', 'slow_count', '慢请求数', TRUE, FALSE, FALSE, FALSE, 8, 'bigint', 2),
+('system_log_aggregate', 'logged_count', '已记录明细数', TRUE, FALSE, FALSE, FALSE, 9, 'bigint', 2),
+('system_log_aggregate', 'total_duration_ms', '总耗时(毫秒)', TRUE, FALSE, FALSE, FALSE, 10, 'bigint', 2),
+('system_log_aggregate', 'max_duration_ms', '最大耗时(毫秒)', TRUE, FALSE, FALSE, FALSE, 11, 'bigint', 2);
+
+-- system_log_hourly 表字段属性配置
+INSERT INTO column_attribute (db_table_name, column_name, page_name, is_show_in_list, search_flag, edit_flag, is_required, order_no, field_type, field_num_type) VALUES
+('system_log_hourly', 'id', 'ID', FALSE, FALSE, FALSE, FALSE, 1, 'int', 2),
+('system_log_hourly', 'method', '请求方法', TRUE, TRUE, FALSE, FALSE, 2, 'varchar', 1),
+('system_log_hourly', 'request_uri', '请求URI', TRUE, TRUE, FALSE, FALSE, 3, 'varchar', 1),
+('system_log_hourly', 'hour_start', '小时开始时间', TRUE, TRUE, FALSE, FALSE, 4, 'timestamp', 4),
+('system_log_hourly', 'request_count', '请求数', TRUE, FALSE, FALSE, FALSE, 5, 'bigint', 2),
+('system_log_hourly', 'error_count', '失败数', TRUE, FALSE, FALSE, FALSE, 6, 'bigint', 2),
+('system_log_hourly', 'slow_count', '慢请求数', TRUE, FALSE, FALSE, FALSE, 7, 'bigint', 2),
+('system_log_hourly', 'total_duration_ms', '总耗时(毫秒)', TRUE, FALSE, FALSE, FALSE, 8, 'bigint', 2),
+('system_log_hourly', 'avg_duration_ms', '平均耗时(毫秒)', TRUE, FALSE, FALSE, FALSE, 9, 'bigint', 2),
+('system_log_hourly', 'max_duration_ms', '最大耗时(毫秒)', TRUE, FALSE, FALSE, FALSE, 10, 'bigint', 2);
+
 -- =====================================================================
 -- 列校验规则配置 (column_check_property)
 -- =====================================================================
@@ -348,3 +383,15 @@ INSERT INTO column_check_property (check_table, target_table, check_column, chec
 ('launch_configs', 'launch_configs', 'device_id', 'required', 1, 1, '设备ID不能为空'),
 ('launch_configs', 'launch_configs', 'name', 'required', 2, 1, '配置名称不能为空');
 
+-- upsert 冲突键（须与数据库唯一约束一致）
+UPDATE column_attribute SET is_unique = 1
+WHERE (db_table_name = 'device_accounts' AND column_name = 'device_id')
+   OR (db_table_name = 'launch_configs' AND column_name IN ('device_id', 'name'));
+
+-- 读多写少的小表开启查询结果缓存（写入时按表失效）
+UPDATE table_attribute SET cache_ttl_seconds = 300
+WHERE db_table IN ('sys_dict_item', 'sys_role', 'sys_org', 'launch_configs');
+
+-- 只追加、对延迟不敏感的表开启异步写入（队列满时溢写到文件）
+UPDATE table_attribute SET write_behind = 'spill'
+WHERE db_table = 'system_log';
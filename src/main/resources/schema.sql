@@ -71,6 +71,8 @@ CREATE TABLE table_attribute (
   role_flag TINYINT DEFAULT 0 COMMENT '是否角色控制',
   join_str VARCHAR(500) COMMENT '默认 JOIN',
   defin_columns VARCHAR(500) COMMENT '自定义字段',
+  cache_ttl_seconds INT DEFAULT 0 COMMENT '查询结果缓存秒数，0 表示不缓存',
+  write_behind VARCHAR(10) COMMENT '异步写入策略：block/drop/spill，为空表示同步写入',
   UNIQUE KEY idx_db_table (db_table)
 );
 
@@ -110,6 +112,7 @@ CREATE TABLE column_attribute (
   templet_res_id INT COMMENT '模板ID',
   select_columns VARCHAR(500) COMMENT '外联字段',
   is_export TINYINT DEFAULT 0 COMMENT '可导出',
+  is_unique TINYINT DEFAULT 0 COMMENT '唯一键（upsert 冲突判断）',
   show_width INT COMMENT '显示宽度',
   content_len INT COMMENT '内容长度',
   edit_type VARCHAR(50) COMMENT '编辑属性',
@@ -161,7 +164,8 @@ CREATE TABLE column_check_property (
   check_mode VARCHAR(50) NOT NULL,
   check_order INT DEFAULT 1,
   status INT DEFAULT 1,
-  errorMsg VARCHAR(255)
+  errorMsg VARCHAR(255),
+  params VARCHAR(500) COMMENT '规则参数(JSON)，如 isRang 的 {"min":0,"max":100}'
 );
 
 -- 系统字典分类表
@@ -209,7 +213,45 @@ CREATE TABLE system_log (
   status INT COMMENT '状态码',
   response_body TEXT COMMENT '响应内容',
   duration_ms BIGINT COMMENT '执行时间(毫秒)',
-  created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间'
+  created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  KEY idx_system_log_created (created_at),
+  KEY idx_system_log_uri (request_uri, created_at)
+);
+-- 开启 app.log-storage.enabled 后，新日志写入按天/周分桶的 system_log_yyyyMMdd / system_log_wyyyyMMdd
+-- （由 LogStorageService 按本表结构自动创建），本表仅保留历史数据，查询时与分桶表合并
+
+-- 操作日志按 URI 汇总统计（未记录明细的请求也计入）
+DROP TABLE IF EXISTS system_log_aggregate;
+CREATE TABLE system_log_aggregate (
+  id INT AUTO_INCREMENT PRIMARY KEY,
+  method VARCHAR(10) COMMENT '请求方法',
+  request_uri VARCHAR(255) COMMENT '请求URI',
+  window_start TIMESTAMP COMMENT '统计开始时间',
+  window_end TIMESTAMP COMMENT '统计结束时间',
+  request_count BIGINT COMMENT '请求数',
+  error_count BIGINT COMMENT '失败数',
+  slow_count BIGINT COMMENT '慢请求数',
+  logged_count BIGINT COMMENT '已记录明细数',
+  total_duration_ms BIGINT COMMENT '总耗时(毫秒)',
+  max_duration_ms BIGINT COMMENT '最大耗时(毫秒)',
+  KEY idx_system_log_aggregate_window (window_start)
+);
+
+-- 操作日志按 URI、小时汇总（由 system_log_aggregate 定时汇总）
+DROP TABLE IF EXISTS system_log_hourly;
+CREATE TABLE system_log_hourly (
+  id INT AUTO_INCREMENT PRIMARY KEY,
+  method VARCHAR(10) COMMENT '请求方法',
+  request_uri VARCHAR(255) COMMENT '请求URI',
+  hour_start TIMESTAMP COMMENT '小时开始时间',
+  request_count BIGINT COMMENT '请求数',
+  error_count BIGINT COMMENT '失败数',
+  slow_count BIGINT COMMENT '慢请求数',
+  total_duration_ms BIGINT COMMENT '总耗时(毫秒)',
+  avg_duration_ms BIGINT COMMENT '平均耗时(毫秒)',
+  max_duration_ms BIGINT COMMENT '最大耗时(毫秒)',
+  KEY idx_system_log_hourly_hour (hour_start),
+  KEY idx_system_log_hourly_uri (request_uri, hour_start)
 );
 
 -- 设备账户表
@@ -238,6 +280,7 @@ CREATE TABLE launch_configs (
     remote_ip VARCHAR(255) COMMENT '远程/VPN IP 地址',
     created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    UNIQUE KEY uk_device_name (device_id, name),
     CONSTRAINT fk_device_id FOREIGN KEY (device_id) REFERENCES device_accounts(device_id)
 ) COMMENT='工作流配置表';
 
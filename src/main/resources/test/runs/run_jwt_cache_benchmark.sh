@@ -0,0 +1,86 @@
+#!/bin/bash
+
+# 已验证 Token 缓存的对比测试：同一 Token 连续请求 N 次（复用连接），统计平均/P50/P99 耗时及缓存命中情况。
+# 对比无缓存路径时，以 --app.jwt.verified-cache-size=0 启动服务后再次执行本脚本。
+# 本脚本测量的是端到端请求耗时，验证本身的耗时差异请用进程内 JMH 基准：mvn -Pjmh test-compile exec:exec
+#
+# 用法: run_jwt_cache_benchmark.sh [请求次数，默认 2000]
+
+# 设置基础变量
+API_BASE="http://localhost:8080"
+RESULT_DIR="src/main/resources/test/test_results"
+LOG_DIR="./logs"
+REQUESTS="${1:-2000}"
+# 需要认证的轻量接口（操作日志采样率为 0，不产生日志写入）
+TARGET="${API_BASE}/api/system/metrics"
+
+# 创建结果目录
+mkdir -p "${RESULT_DIR}"
+mkdir -p "${LOG_DIR}"
+
+# 日志文件
+LOG_FILE="${LOG_DIR}/jwt_cache_benchmark_$(date +%Y%m%d_%H%M%S).log"
+
+# 记录日志的函数
+log() {
+  echo "[$(date +"%Y-%m-%d %H:%M:%S")] $1" | tee -a "${LOG_FILE}"
+}
+
+# 读取 jwtCache 统计中的数值字段
+cache_stat() {
+  echo "$1" | grep -o "\"jwtCache\":{[^}]*}" | grep -o "\"$2\":[0-9.]*" | cut -d: -f2
+}
+
+# 连续请求并输出每次的耗时（秒），URL 通配使 curl 在同一连接上顺序发送
+run_requests() {
+  curl -s -o /dev/null -w "%{time_total}\n" -H "Authorization: Bearer ${TOKEN}" "${TARGET}?i=[1-$1]"
+}
+
+# 主函数
+main() {
+  log "开始执行Token缓存对比测试，请求次数: ${REQUESTS}"
+
+  # 健康检查
+  HEALTH_STATUS=$(curl -s -o /dev/null -w "%{http_code}" "${API_BASE}/api/common/health")
+  if [ "$HEALTH_STATUS" != "200" ]; then
+    log "健康检查失败: $HEALTH_STATUS，服务可能未启动，退出测试"
+    exit 1
+  fi
+
+  # 登录获取Token
+  TOKEN=$(curl -s -X POST "${API_BASE}/api/core/login" -H "Content-Type: application/json" \
+    -d '{"username":"admin","password":"ycbd1234"}' | grep -o '"token":"[^"]*"' | cut -d'"' -f4)
+  if [ -z "$TOKEN" ]; then
+    log "登录失败，未获取到Token，退出测试"
+    exit 1
+  fi
+
+  BEFORE=$(curl -s -H "Authorization: Bearer ${TOKEN}" "${TARGET}")
+  MAX_SIZE=$(cache_stat "$BEFORE" maxSize)
+  if [ "$MAX_SIZE" == "0" ]; then
+    log "当前服务未启用Token缓存（app.jwt.verified-cache-size=0），测量的是每次验证签名的耗时"
+  else
+    log "当前服务已启用Token缓存，maxSize=${MAX_SIZE}"
+  fi
+
+  # 预热
+  run_requests 200 > /dev/null
+  BEFORE=$(curl -s -H "Authorization: Bearer ${TOKEN}" "${TARGET}")
+
+  # 正式测量
+  TIMES_FILE="${RESULT_DIR}/jwt_cache_benchmark_times.txt"
+  run_requests "${REQUESTS}" > "${TIMES_FILE}"
+  AFTER=$(curl -s -H "Authorization: Bearer ${TOKEN}" "${TARGET}")
+
+  STATS=$(sort -n "${TIMES_FILE}" | awk '{ t[NR] = $1; sum += $1 } END {
+    if (NR == 0) { print "无有效结果"; exit }
+    printf "平均 %.3fms, P50 %.3fms, P99 %.3fms, 共 %d 次", sum / NR * 1000, t[int(NR * 0.5) + 1] * 1000, t[int(NR * 0.99) + 1] * 1000, NR
+  }')
+  log "请求耗时: ${STATS}"
+  log "缓存命中: $(( $(cache_stat "$AFTER" hits) - $(cache_stat "$BEFORE" hits) )), 未命中: $(( $(cache_stat "$AFTER" misses) - $(cache_stat "$BEFORE" misses) ))"
+
+  log "Token缓存对比测试执行完成，单次耗时保存在 ${TIMES_FILE}"
+}
+
+# 执行主函数
+main